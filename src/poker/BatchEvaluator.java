@@ -0,0 +1,132 @@
+package poker;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/***
+ * scores large batches of hands in parallel on a ForkJoinPool
+ *
+ * a batch is split in halves until a piece is small enough to score on one
+ * thread. results are primitive scores (see EvaluationInfo.getScore()) in
+ * the order of the input. hands are either card masks (see Card) or
+ * encoded cards packed back to back in one int array, handSize cards per
+ * hand. the input is only read, so a batch can be shared between threads
+ */
+public final class BatchEvaluator {
+
+	// hands scored by one task without splitting further
+	static final int THRESHOLD = 4096;
+
+	private BatchEvaluator() {
+	}
+
+	// scores hands given as card masks, on the common pool
+	public static int[] scoreAll(long[] masks) {
+		return scoreAll(masks, ForkJoinPool.commonPool());
+	}
+
+	public static int[] scoreAll(long[] masks, ForkJoinPool pool) {
+		int[] scores = new int[masks.length];
+		pool.invoke(new MaskTask(masks, scores, 0, masks.length));
+		return scores;
+	}
+
+	// scores hands of handSize encoded cards packed back to back, on the common pool
+	// cards may repeat within a hand (shoe games)
+	public static int[] scoreAll(int[] cards, int handSize) {
+		return scoreAll(cards, handSize, ForkJoinPool.commonPool());
+	}
+
+	public static int[] scoreAll(int[] cards, int handSize, ForkJoinPool pool) {
+		if (handSize <= 0 || cards.length % handSize != 0)
+			throw new IllegalArgumentException(cards.length + " cards do not split into hands of " + handSize);
+
+		int[] scores = new int[cards.length / handSize];
+		pool.invoke(new PackedTask(cards, handSize, scores, 0, scores.length));
+		return scores;
+	}
+
+	// scores masks[from] to masks[to - 1]
+	private static class MaskTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final long[] masks;
+		private final int[] scores;
+		private final int from;
+		private final int to;
+
+		MaskTask(long[] masks, int[] scores, int from, int to) {
+			this.masks = masks;
+			this.scores = scores;
+			this.from = from;
+			this.to = to;
+		}
+
+		protected void compute() {
+			if (to - from <= THRESHOLD) {
+				for (int i = from; i < to; i++) scores[i] = BitboardEvaluator.score(masks[i]);
+				return;
+			}
+
+			int mid = (from + to) >>> 1;
+			invokeAll(new MaskTask(masks, scores, from, mid), new MaskTask(masks, scores, mid, to));
+		}
+	}
+
+	// scores packed hands from to to - 1
+	private static class PackedTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final int[] cards;
+		private final int handSize;
+		private final int[] scores;
+		private final int from;
+		private final int to;
+
+		PackedTask(int[] cards, int handSize, int[] scores, int from, int to) {
+			this.cards = cards;
+			this.handSize = handSize;
+			this.scores = scores;
+			this.from = from;
+			this.to = to;
+		}
+
+		protected void compute() {
+			if (to - from <= THRESHOLD) {
+				if (handSize == 7) scoreSevenCardHands();
+				else scoreHands();
+				return;
+			}
+
+			int mid = (from + to) >>> 1;
+			invokeAll(new PackedTask(cards, handSize, scores, from, mid),
+					new PackedTask(cards, handSize, scores, mid, to));
+		}
+
+		private void scoreHands() {
+			ScratchEvaluator evaluator = ScratchEvaluator.forCurrentThread();
+			for (int i = from; i < to; i++) scores[i] = evaluator.score(cards, i * handSize, handSize);
+		}
+
+		// Hold'em hands go through the seven card tables
+		private void scoreSevenCardHands() {
+			ScratchEvaluator evaluator = null;
+			for (int i = from; i < to; i++) {
+				int offset = i * 7;
+				long key = 0L;
+				long mask = 0L;
+				for (int c = offset; c < offset + 7; c++) {
+					key += SevenCardLookup.cardKey(cards[c]);
+					mask |= Card.bit(cards[c]);
+				}
+
+				if (Long.bitCount(mask) == 7) {
+					scores[i] = SevenCardLookup.score(key, mask);
+				} else {
+					if (evaluator == null) evaluator = ScratchEvaluator.forCurrentThread();
+					scores[i] = evaluator.score(cards, offset, 7);
+				}
+			}
+		}
+	}
+}
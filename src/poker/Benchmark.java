@@ -0,0 +1,263 @@
+package poker;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.json.JSONArray;
+
+/***
+ * benchmarks for the evaluators and the showdown code
+ *
+ * every benchmark runs over a corpus of random hands dealt from a fixed
+ * seed, so runs on different builds or machines see the same hands. a
+ * benchmark is warmed up, then timed over several iterations of a fixed
+ * duration; it reports the mean and spread of the time per operation and
+ * the bytes the benchmark thread allocated per operation (from
+ * com.sun.management.ThreadMXBean). results are summed into a checksum so
+ * the JIT cannot drop the work.
+ *
+ * usage: java -cp bin poker.Benchmark [name filter]
+ * for example "java -cp bin poker.Benchmark 7-card" runs only the seven
+ * card benchmarks
+ */
+public final class Benchmark {
+
+	static final long SEED = 20240611L;
+
+	// hands in each corpus
+	static final int CORPUS_SIZE = 1 << 14;
+
+	static final int WARMUP_ITERATIONS = 3;
+	static final int MEASURED_ITERATIONS = 5;
+	static final long ITERATION_NANOS = 500000000L;
+
+	// the engines, and the names benchmarks (and Census) know them by
+	static final EvaluationEngine[] ENGINES = {
+		PokerHandEvaluator.REFERENCE, FiveCardLookup.INSTANCE, SevenCardLookup.INSTANCE,
+		BitboardEvaluator.INSTANCE, MultiDeckEvaluator.INSTANCE
+	};
+	static final String[] ENGINE_NAMES = {"reference", "five-card-lookup", "seven-card-lookup", "bitboard", "multi-deck"};
+
+	private static long checksum;
+
+	// one benchmark: run() performs opsPerCall operations for the call-th call and
+	// returns a value derived from the results. if engine is set, it is made the
+	// PokerHandEvaluator engine while the benchmark runs
+	abstract static class Case {
+		final String name;
+		final int opsPerCall;
+		final EvaluationEngine engine;
+
+		Case(String name, int opsPerCall) {
+			this(name, opsPerCall, null);
+		}
+
+		Case(String name, int opsPerCall, EvaluationEngine engine) {
+			this.name = name;
+			this.opsPerCall = opsPerCall;
+			this.engine = engine;
+		}
+
+		abstract long run(int call);
+	}
+
+	private Benchmark() {
+	}
+
+	public static void main(String[] args) {
+		String filter = args.length > 0 ? args[0] : "";
+
+		System.out.printf("%-44s %12s %10s %12s%n", "Benchmark", "ns/op", "+-", "B/op");
+		for (Case c : cases()) {
+			if (c.name.contains(filter)) run(c);
+		}
+		System.out.println("(checksum " + checksum + ")");
+	}
+
+	// all benchmarks, in the order they are run
+	static List<Case> cases() {
+		List<Case> cases = new ArrayList<Case>();
+		Random random = new Random(SEED);
+
+		final int[][] five = deal(random, CORPUS_SIZE, 5, 5);
+		final int[][] seven = deal(random, CORPUS_SIZE, 7, 7);
+		final int[][] mixed = deal(random, CORPUS_SIZE, 1, 12);
+
+		for (int e = 0; e < ENGINES.length; e++) {
+			cases.add(evalHandCase("evalHand 5-card " + ENGINE_NAMES[e], ENGINES[e], five));
+			cases.add(evalHandCase("evalHand 7-card " + ENGINE_NAMES[e], ENGINES[e], seven));
+			cases.add(evalHandCase("evalHand n-card " + ENGINE_NAMES[e], ENGINES[e], mixed));
+		}
+
+		final long[] sevenKeys = new long[CORPUS_SIZE];
+		final long[] sevenMasks = new long[CORPUS_SIZE];
+		for (int i = 0; i < CORPUS_SIZE; i++) {
+			for (int card : seven[i]) sevenKeys[i] += SevenCardLookup.cardKey(card);
+			sevenMasks[i] = Card.mask(seven[i]);
+		}
+		cases.add(new Case("score 7-card seven-card-lookup key", 1) {
+			long run(int call) {
+				int i = call & (CORPUS_SIZE - 1);
+				return SevenCardLookup.score(sevenKeys[i], sevenMasks[i]);
+			}
+		});
+		cases.add(new Case("score 7-card bitboard mask", 1) {
+			long run(int call) {
+				return BitboardEvaluator.score(sevenMasks[call & (CORPUS_SIZE - 1)]);
+			}
+		});
+
+		final ScratchEvaluator scratch = ScratchEvaluator.forCurrentThread();
+		final HandResult result = new HandResult();
+		cases.add(new Case("evaluate n-card scratch", 1) {
+			long run(int call) {
+				int[] hand = mixed[call & (CORPUS_SIZE - 1)];
+				scratch.evaluate(hand, hand.length, result);
+				return result.getScore();
+			}
+		});
+
+		final int[][] omahaHoles = deal(random, CORPUS_SIZE, 4, 4);
+		final int[][] omahaBoards = new int[CORPUS_SIZE][];
+		for (int i = 0; i < CORPUS_SIZE; i++) omahaBoards[i] = dealAround(random, omahaHoles[i], 5);
+		cases.add(new Case("score omaha 4+5", 1) {
+			long run(int call) {
+				int i = call & (CORPUS_SIZE - 1);
+				return OmahaEvaluator.score(omahaHoles[i], omahaBoards[i]);
+			}
+		});
+
+		// every engine sees the same tables
+		for (final int players : new int[] {2, 6, 9, 100}) {
+			final List<List<JSONArray>> tables = tables(random, players);
+			for (int e = 0; e < ENGINES.length; e++) {
+				cases.add(new Case("findWinners " + players + " players " + ENGINE_NAMES[e], players, ENGINES[e]) {
+					long run(int call) {
+						return PokerHandEvaluator.findWinners(tables.get(call % tables.size())).size();
+					}
+				});
+				cases.add(new Case("rankHands " + players + " players " + ENGINE_NAMES[e], players, ENGINES[e]) {
+					long run(int call) {
+						return PokerHandEvaluator.rankHands(tables.get(call % tables.size())).size();
+					}
+				});
+			}
+		}
+		return cases;
+	}
+
+	// the engine with a name from ENGINE_NAMES
+	static EvaluationEngine engine(String name) {
+		for (int e = 0; e < ENGINES.length; e++) {
+			if (ENGINE_NAMES[e].equals(name)) return ENGINES[e];
+		}
+		throw new IllegalArgumentException("unknown engine " + name + ", expected one of " + Arrays.toString(ENGINE_NAMES));
+	}
+
+	private static Case evalHandCase(String name, EvaluationEngine engine, final int[][] hands) {
+		return new Case(name, 1, engine) {
+			long run(int call) {
+				return this.engine.score(hands[call & (CORPUS_SIZE - 1)]);
+			}
+		};
+	}
+
+	// warms a benchmark up, measures it and prints one line of results
+	static void run(Case c) {
+		EvaluationEngine previous = PokerHandEvaluator.getEngine();
+		if (c.engine != null) PokerHandEvaluator.setEngine(c.engine);
+		try {
+			measure(c);
+		} finally {
+			PokerHandEvaluator.setEngine(previous);
+		}
+	}
+
+	private static void measure(Case c) {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long thread = Thread.currentThread().getId();
+
+		for (int i = 0; i < WARMUP_ITERATIONS; i++) iteration(c);
+
+		double[] nanosPerOp = new double[MEASURED_ITERATIONS];
+		long ops = 0;
+		long allocated = threads.getThreadAllocatedBytes(thread);
+		for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+			long[] measured = iteration(c);
+			nanosPerOp[i] = (double) measured[1] / measured[0];
+			ops += measured[0];
+		}
+		allocated = threads.getThreadAllocatedBytes(thread) - allocated;
+
+		double mean = 0;
+		for (double x : nanosPerOp) mean += x / nanosPerOp.length;
+		double variance = 0;
+		for (double x : nanosPerOp) variance += (x - mean) * (x - mean) / nanosPerOp.length;
+
+		System.out.printf("%-44s %12.1f %10.1f %12.1f%n", c.name, mean, Math.sqrt(variance), (double) allocated / ops);
+	}
+
+	// runs a benchmark for about ITERATION_NANOS and returns {operations, nanoseconds}
+	private static long[] iteration(Case c) {
+		long sum = 0;
+		int calls = 0;
+		long start = System.nanoTime();
+		long elapsed;
+		do {
+			// check the clock every 256 calls
+			for (int i = 0; i < 256; i++) sum += c.run(calls++);
+			elapsed = System.nanoTime() - start;
+		} while (elapsed < ITERATION_NANOS);
+		checksum += sum;
+		return new long[] {(long) calls * c.opsPerCall, elapsed};
+	}
+
+	// count hands of minSize to maxSize distinct random cards
+	static int[][] deal(Random random, int count, int minSize, int maxSize) {
+		int[][] hands = new int[count][];
+		for (int h = 0; h < count; h++) hands[h] = dealAround(random, new int[0], minSize + random.nextInt(maxSize - minSize + 1));
+		return hands;
+	}
+
+	// size random cards that are not in dead
+	private static int[] dealAround(Random random, int[] dead, int size) {
+		long used = Card.mask(dead);
+		int[] cards = new int[size];
+		for (int c = 0; c < size; c++) {
+			do {
+				cards[c] = random.nextInt(Card.NUM_CARDS);
+			} while ((used & Card.bit(cards[c])) != 0);
+			used |= Card.bit(cards[c]);
+		}
+		return cards;
+	}
+
+	// 64 showdowns of players Hold'em hands each, as JSON hands of two hole cards plus a shared
+	// board; past 23 players the deck runs out, so the rest get seven cards of their own
+	private static List<List<JSONArray>> tables(Random random, int players) {
+		List<List<JSONArray>> tables = new ArrayList<List<JSONArray>>();
+		for (int t = 0; t < 64; t++) {
+			List<JSONArray> hands = new ArrayList<JSONArray>(players);
+			int[] board = dealAround(random, new int[0], 5);
+			long used = Card.mask(board);
+			for (int p = 0; p < players; p++) {
+				int[] cards;
+				if (Long.bitCount(used) + 2 <= Card.NUM_CARDS) {
+					int[] hole = dealAround(random, Card.fromMask(used), 2);
+					used |= Card.mask(hole);
+					cards = new int[] {hole[0], hole[1], board[0], board[1], board[2], board[3], board[4]};
+				} else {
+					cards = dealAround(random, new int[0], 7);
+				}
+
+				JSONArray hand = new JSONArray();
+				for (int card : cards) hand.put(Card.toString(card));
+				hands.add(hand);
+			}
+			tables.add(hands);
+		}
+		return tables;
+	}
+}
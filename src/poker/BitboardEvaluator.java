@@ -0,0 +1,134 @@
+package poker;
+
+/***
+ * branch-light evaluation of hands of any size from their card mask
+ *
+ * the mask (see Card) is four 13-bit suit lanes. flushes are found by the
+ * popcount of each lane, straights by and-ing a rank mask with shifted
+ * copies of itself (plus a check for the A-2-3-4-5 wheel), and pairs,
+ * three and four of a kind by and/or folding the lanes into masks of the
+ * ranks held at least twice, three and four times. no sorting or counting
+ * loops are needed, so it handles 5 to 52 card hands alike. scores are the
+ * same as the reference logic (see EvaluationInfo.getScore())
+ */
+public final class BitboardEvaluator implements EvaluationEngine {
+
+	public static final BitboardEvaluator INSTANCE = new BitboardEvaluator();
+
+	// rank mask of the A-2-3-4-5 wheel
+	private static final int WHEEL = 0x100F;
+
+	// each category shifted into place in a score
+	static final int STRAIGHT_FLUSH = PokerHandEvaluator.Category.STRAIGHT_FLUSH.ordinal() << 20;
+	static final int ROYAL_FLUSH = PokerHandEvaluator.Category.ROYAL_FLUSH.ordinal() << 20;
+	static final int FOUR_OF_A_KIND = PokerHandEvaluator.Category.FOUR_OF_A_KIND.ordinal() << 20;
+	static final int FULL_HOUSE = PokerHandEvaluator.Category.FULL_HOUSE.ordinal() << 20;
+	static final int FLUSH = PokerHandEvaluator.Category.FLUSH.ordinal() << 20;
+	static final int STRAIGHT = PokerHandEvaluator.Category.STRAIGHT.ordinal() << 20;
+	static final int THREE_OF_A_KIND = PokerHandEvaluator.Category.THREE_OF_A_KIND.ordinal() << 20;
+	static final int TWO_PAIR = PokerHandEvaluator.Category.TWO_PAIR.ordinal() << 20;
+	static final int ONE_PAIR = PokerHandEvaluator.Category.ONE_PAIR.ordinal() << 20;
+	static final int HIGH_CARD = PokerHandEvaluator.Category.HIGH_CARD.ordinal() << 20;
+
+	private BitboardEvaluator() {
+	}
+
+	public int score(int[] cards) {
+		long mask = Card.mask(cards);
+
+		// a mask cannot hold repeated cards
+		if (Long.bitCount(mask) != cards.length) return PokerHandEvaluator.REFERENCE.score(cards);
+
+		return score(mask);
+	}
+
+	// scores a set of distinct cards packed into a mask (see Card)
+	public static int score(long mask) {
+		return score(Card.suitMask(mask, 0), Card.suitMask(mask, 1), Card.suitMask(mask, 2), Card.suitMask(mask, 3),
+				Long.bitCount(mask));
+	}
+
+	// scores numCards distinct cards given as their four suit masks
+	static int score(int s0, int s1, int s2, int s3, int numCards) {
+		// straight flushes and flushes, keeping the best over all suits
+		int flush = 0;
+		if (numCards >= 5) {
+			flush = Math.max(Math.max(flushScore(s0), flushScore(s1)), Math.max(flushScore(s2), flushScore(s3)));
+			if (flush >= STRAIGHT_FLUSH) return flush;
+		}
+
+		// fold the suit lanes into masks of ranks held at least one, two, three and four times
+		int ones = s0 | s1 | s2 | s3;
+		int twos = (s0 & s1) | (s2 & s3) | ((s0 | s1) & (s2 | s3));
+		int threes = (s0 & s1 & (s2 | s3)) | (s2 & s3 & (s0 | s1));
+		int fours = s0 & s1 & s2 & s3;
+
+		if (fours != 0) {
+			int quads = Integer.highestOneBit(fours);
+			return FOUR_OF_A_KIND | (rank(quads) << 16) | (topRanks(ones & ~quads, 1) << 12);
+		}
+
+		if (threes != 0) {
+			int trips = Integer.highestOneBit(threes);
+			int pair = Integer.highestOneBit(twos & ~trips);
+			if (pair != 0) return FULL_HOUSE | (rank(trips) << 16) | (rank(pair) << 12);
+		}
+
+		if (flush != 0) return flush;
+
+		int straight = straightHigh(ones);
+		if (straight != 0) return STRAIGHT | (straight << 16);
+
+		if (threes != 0) {
+			int trips = Integer.highestOneBit(threes);
+			return THREE_OF_A_KIND | (rank(trips) << 16) | (topRanks(ones & ~trips, 2) << 8);
+		}
+
+		if (twos != 0) {
+			int high = Integer.highestOneBit(twos);
+			int low = Integer.highestOneBit(twos & ~high);
+			if (low != 0) {
+				return TWO_PAIR | (rank(high) << 16) | (rank(low) << 12)
+						| (topRanks(ones & ~(high | low), 1) << 8);
+			}
+			return ONE_PAIR | (rank(high) << 16) | (topRanks(ones & ~high, 3) << 4);
+		}
+
+		return HIGH_CARD | topRanks(ones, 5);
+	}
+
+	// straight flush or flush score for one suit, or 0 when it has fewer than five cards
+	private static int flushScore(int suit) {
+		if (Integer.bitCount(suit) < 5) return 0;
+
+		int high = straightHigh(suit);
+		if (high == 14) return ROYAL_FLUSH | (14 << 16);
+		if (high != 0) return STRAIGHT_FLUSH | (high << 16);
+		return FLUSH | topRanks(suit, 5);
+	}
+
+	// rank of the high card of the best straight in a rank mask, or 0 if there is none
+	static int straightHigh(int ranks) {
+		int runs = ranks & (ranks << 1) & (ranks << 2) & (ranks << 3) & (ranks << 4);
+		if (runs != 0) return 33 - Integer.numberOfLeadingZeros(runs);
+		if ((ranks & WHEEL) == WHEEL) return 5;
+		return 0;
+	}
+
+	// packs the count highest ranks of a rank mask four bits each, highest first,
+	// padding with zeros when the mask runs out of ranks
+	static int topRanks(int ranks, int count) {
+		int packed = 0;
+		for (int i = 0; i < count; i++) {
+			int bit = Integer.highestOneBit(ranks);
+			ranks &= ~bit;
+			packed = (packed << 4) | (bit == 0 ? 0 : rank(bit));
+		}
+		return packed;
+	}
+
+	// rank (2 through 14) of a single-bit rank mask
+	static int rank(int bit) {
+		return 33 - Integer.numberOfLeadingZeros(bit);
+	}
+}
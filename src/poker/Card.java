@@ -0,0 +1,118 @@
+package poker;
+
+import org.json.JSONArray;
+
+/***
+ * compact primitive encoding for playing cards
+ *
+ * a card is an int from 0 to 51 laid out rank-major: (rank - 2) * 4 + suit,
+ * so sorting cards numerically also sorts them by rank. a set of distinct
+ * cards can also be packed into a 52-bit long mask made of four 13-bit
+ * suit lanes (bit = suit * 13 + rank - 2)
+ */
+public final class Card {
+
+	// suits, in the same order getFlushes() has always bucketed them
+	public static final int HEARTS = 0;
+	public static final int CLUBS = 1;
+	public static final int DIAMONDS = 2;
+	public static final int SPADES = 3;
+
+	public static final int NUM_CARDS = 52;
+
+	private static final char[] RANK_CHARS = "23456789TJQKA".toCharArray();
+	private static final char[] SUIT_CHARS = {'H', 'C', 'D', 'S'};
+
+	// mask bit for each card, so building a mask never needs a multiply
+	private static final long[] BITS = new long[NUM_CARDS];
+
+	static {
+		for (int card = 0; card < NUM_CARDS; card++)
+			BITS[card] = 1L << (suit(card) * 13 + rank(card) - 2);
+	}
+
+	private Card() {
+	}
+
+	// builds a card from a rank (2 through 14) and a suit (0 through 3)
+	public static int of(int rank, int suit) {
+		return ((rank - 2) << 2) | suit;
+	}
+
+	// rank of a card, 2 through 14 (ace high)
+	public static int rank(int card) {
+		return (card >> 2) + 2;
+	}
+
+	public static int suit(int card) {
+		return card & 3;
+	}
+
+	// single-bit mask for a card
+	public static long bit(int card) {
+		return BITS[card];
+	}
+
+	// 13-bit rank mask (bit 0 = deuce) of one suit lane of a card mask
+	public static int suitMask(long mask, int suit) {
+		return (int) (mask >>> (suit * 13)) & 0x1FFF;
+	}
+
+	// packs a set of distinct cards into a mask
+	public static long mask(int[] cards) {
+		long mask = 0L;
+		for (int card : cards) mask |= BITS[card];
+		return mask;
+	}
+
+	// unpacks a mask into cards in ascending order
+	public static int[] fromMask(long mask) {
+		int[] cards = new int[Long.bitCount(mask)];
+		int n = 0;
+		for (int rank = 2; rank <= 14; rank++) {
+			for (int suit = 0; suit < 4; suit++) {
+				if ((mask & (1L << (suit * 13 + rank - 2))) != 0) cards[n++] = of(rank, suit);
+			}
+		}
+		return cards;
+	}
+
+	// parses cards in the "10S" / "KH" notation. parsing is as lenient as
+	// the string evaluator always was: an unknown rank reads as an ace and
+	// an unknown suit reads as a spade, but a digit rank below 2 has no card
+	public static int parse(String card) {
+		char value = card.charAt(0);
+		char suite = card.length() == 3 ? card.charAt(2) : card.charAt(1);
+
+		int rank;
+		if (card.length() == 3) rank = 10;
+		else if (Character.isDigit(value)) rank = Character.getNumericValue(value);
+		else if (value == 'T') rank = 10;
+		else if (value == 'J') rank = 11;
+		else if (value == 'Q') rank = 12;
+		else if (value == 'K') rank = 13;
+		else rank = 14;
+		if (rank < 2) throw new IllegalArgumentException("no card has rank " + value + ": " + card);
+
+		int suit;
+		if (suite == 'H') suit = HEARTS;
+		else if (suite == 'C') suit = CLUBS;
+		else if (suite == 'D') suit = DIAMONDS;
+		else suit = SPADES;
+
+		return of(rank, suit);
+	}
+
+	// parses a JSONArray of card strings
+	public static int[] parse(JSONArray hand) {
+		int[] cards = new int[hand.length()];
+		for (int i = 0; i < cards.length; i++) cards[i] = parse(hand.getString(i));
+		return cards;
+	}
+
+	public static String toString(int card) {
+		int rank = rank(card);
+		String value = rank == 10 ? "10" : String.valueOf(RANK_CHARS[rank - 2]);
+		return value + SUIT_CHARS[suit(card)];
+	}
+}
@@ -0,0 +1,190 @@
+package poker;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/***
+ * exhaustive census of every five card (2,598,960) or seven card
+ * (133,784,560) hand
+ *
+ * every hand is scored with an engine and counted by category, and the
+ * counts are compared with the known combinatorial counts, so a census is
+ * a complete correctness check of an engine (one wrongly scored straight,
+ * such as a missed wheel, shows up as a wrong count). the hands are split
+ * by their two lowest cards into 1,326 pieces that run on a ForkJoinPool,
+ * which also makes a census a throughput benchmark: main() runs it on 1,
+ * 2, 4, ... threads up to the number of processors and prints the hands
+ * per second and the speedup at each.
+ *
+ * usage: java -cp bin poker.Census [5|7] [engine]
+ * where engine is one of the names in Benchmark (default: the current
+ * evalHand() engine)
+ */
+public final class Census {
+
+	// known number of hands in each category (by Category ordinal)
+	static final long[] FIVE_CARD_COUNTS = {
+		1302540L, 1098240L, 123552L, 54912L, 10200L, 5108L, 3744L, 624L, 36L, 4L, 0L, 0L
+	};
+	static final long[] SEVEN_CARD_COUNTS = {
+		23294460L, 58627800L, 31433400L, 6461620L, 6180020L, 4047644L, 3473184L, 224848L, 37260L, 4324L, 0L, 0L
+	};
+
+	private static final PokerHandEvaluator.Category[] CATEGORIES = PokerHandEvaluator.Category.values();
+
+	private Census() {
+	}
+
+	public static void main(String[] args) {
+		int handSize = args.length > 0 ? Integer.parseInt(args[0]) : 7;
+		EvaluationEngine engine = PokerHandEvaluator.getEngine();
+		String engineName = "current";
+		if (args.length > 1) {
+			engineName = args[1];
+			engine = Benchmark.engine(engineName);
+		}
+		expectedCounts(handSize);
+
+		System.out.println(handSize + " card census, " + engineName + " engine");
+		boolean ok = true;
+		double baseline = 0;
+		System.out.printf("%8s %10s %14s %14s %8s%n", "threads", "seconds", "hands/s", "hands/s/thread", "speedup");
+		List<Integer> threadCounts = threadCounts(Runtime.getRuntime().availableProcessors());
+		long[] counts = null;
+		for (int threads : threadCounts) {
+			ForkJoinPool pool = new ForkJoinPool(threads);
+			long start = System.nanoTime();
+			counts = count(handSize, engine, pool);
+			double seconds = (System.nanoTime() - start) / 1e9;
+			pool.shutdown();
+
+			ok &= matches(handSize, counts);
+			double handsPerSecond = hands(counts) / seconds;
+			if (baseline == 0) baseline = handsPerSecond;
+			System.out.printf("%8d %10.2f %14.0f %14.0f %8.2f%n", threads, seconds, handsPerSecond,
+					handsPerSecond / threads, handsPerSecond / baseline);
+		}
+
+		System.out.println();
+		System.out.println(toString(handSize, counts));
+		System.out.println(ok ? "All counts match" : "COUNTS DO NOT MATCH");
+		if (!ok) System.exit(1);
+	}
+
+	// counts every hand of handSize distinct cards by category, on the common pool
+	public static long[] count(int handSize, EvaluationEngine engine) {
+		return count(handSize, engine, ForkJoinPool.commonPool());
+	}
+
+	// counts every hand of handSize distinct cards by category (indexed by Category ordinal)
+	public static long[] count(int handSize, EvaluationEngine engine, ForkJoinPool pool) {
+		if (handSize < 2 || handSize > Card.NUM_CARDS)
+			throw new IllegalArgumentException("a census needs 2 to 52 cards per hand, got " + handSize);
+
+		// the two lowest cards of every hand, leaving room for the rest above them
+		List<Integer> prefixes = new ArrayList<Integer>();
+		for (int c0 = 0; c0 < Card.NUM_CARDS; c0++) {
+			for (int c1 = c0 + 1; c1 <= Card.NUM_CARDS - (handSize - 1); c1++) prefixes.add(c0 << 8 | c1);
+		}
+		int[] pieces = new int[prefixes.size()];
+		for (int i = 0; i < pieces.length; i++) pieces[i] = prefixes.get(i);
+
+		return pool.invoke(new CensusTask(engine, handSize, pieces, 0, pieces.length));
+	}
+
+	// whether census counts are the known counts for the hand size
+	public static boolean matches(int handSize, long[] counts) {
+		long[] expected = expectedCounts(handSize);
+		for (int i = 0; i < expected.length; i++) {
+			if (counts[i] != expected[i]) return false;
+		}
+		return true;
+	}
+
+	// the known counts for five or seven card hands
+	static long[] expectedCounts(int handSize) {
+		if (handSize == 5) return FIVE_CARD_COUNTS;
+		if (handSize == 7) return SEVEN_CARD_COUNTS;
+		throw new IllegalArgumentException("known counts are for 5 or 7 cards, not " + handSize);
+	}
+
+	// a table of census counts next to the known counts
+	public static String toString(int handSize, long[] counts) {
+		long[] expected = expectedCounts(handSize);
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format("%-16s %12s %12s%n", "Category", "Count", "Expected"));
+		for (int i = 0; i < CATEGORIES.length; i++) {
+			sb.append(String.format("%-16s %12d %12d%s%n", CATEGORIES[i], counts[i], expected[i],
+					counts[i] == expected[i] ? "" : "  <-- wrong"));
+		}
+		sb.append(String.format("%-16s %12d", "Total", hands(counts)));
+		return sb.toString();
+	}
+
+	private static long hands(long[] counts) {
+		long total = 0;
+		for (long count : counts) total += count;
+		return total;
+	}
+
+	// 1, 2, 4, ... up to and including the number of processors
+	private static List<Integer> threadCounts(int processors) {
+		List<Integer> threadCounts = new ArrayList<Integer>();
+		for (int threads = 1; threads < processors; threads *= 2) threadCounts.add(threads);
+		threadCounts.add(processors);
+		return threadCounts;
+	}
+
+	// counts the hands starting with pieces[from] to pieces[to - 1]
+	private static class CensusTask extends RecursiveTask<long[]> {
+		private static final long serialVersionUID = 1L;
+
+		private final EvaluationEngine engine;
+		private final int handSize;
+		private final int[] pieces;
+		private final int from;
+		private final int to;
+
+		CensusTask(EvaluationEngine engine, int handSize, int[] pieces, int from, int to) {
+			this.engine = engine;
+			this.handSize = handSize;
+			this.pieces = pieces;
+			this.from = from;
+			this.to = to;
+		}
+
+		protected long[] compute() {
+			if (to - from == 1) {
+				long[] counts = new long[CATEGORIES.length];
+				int[] cards = new int[handSize];
+				cards[0] = pieces[from] >> 8;
+				cards[1] = pieces[from] & 0xFF;
+				count(cards, 2, cards[1] + 1, counts);
+				return counts;
+			}
+
+			int mid = (from + to) >>> 1;
+			CensusTask low = new CensusTask(engine, handSize, pieces, from, mid);
+			low.fork();
+			long[] counts = new CensusTask(engine, handSize, pieces, mid, to).compute();
+			long[] lowCounts = low.join();
+			for (int i = 0; i < counts.length; i++) counts[i] += lowCounts[i];
+			return counts;
+		}
+
+		// deals cards[depth] onwards from minCard up, in increasing order, and counts each hand
+		private void count(int[] cards, int depth, int minCard, long[] counts) {
+			if (depth == cards.length) {
+				counts[engine.score(cards) >>> 20]++;
+				return;
+			}
+
+			for (int card = minCard; card <= Card.NUM_CARDS - (cards.length - depth); card++) {
+				cards[depth] = card;
+				count(cards, depth + 1, card + 1, counts);
+			}
+		}
+	}
+}
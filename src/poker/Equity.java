@@ -0,0 +1,101 @@
+package poker;
+
+/***
+ * showdown results of a set of players over many boards
+ *
+ * for each player it counts the boards won outright, the boards tied for
+ * first (split pots) and the share of the pot won, where a pot split k
+ * ways counts 1/k
+ */
+public class Equity {
+	private final long[] wins;
+	private final long[] ties;
+	private final double[] shares;
+	private long boards;
+
+	public Equity(int numPlayers) {
+		wins = new long[numPlayers];
+		ties = new long[numPlayers];
+		shares = new double[numPlayers];
+	}
+
+	// records one board from each player's score
+	void record(int[] scores) {
+		int best = -1;
+		int numBest = 0;
+		for (int score : scores) {
+			if (score > best) {
+				best = score;
+				numBest = 1;
+			} else if (score == best) {
+				numBest++;
+			}
+		}
+
+		double share = 1.0 / numBest;
+		for (int p = 0; p < scores.length; p++) {
+			if (scores[p] != best) continue;
+			if (numBest == 1) wins[p]++;
+			else ties[p]++;
+			shares[p] += share;
+		}
+		boards++;
+	}
+
+	// adds the boards of another result for the same players
+	void add(Equity other) {
+		for (int p = 0; p < wins.length; p++) {
+			wins[p] += other.wins[p];
+			ties[p] += other.ties[p];
+			shares[p] += other.shares[p];
+		}
+		boards += other.boards;
+	}
+
+	public int getNumPlayers() {
+		return wins.length;
+	}
+
+	public long getBoards() {
+		return boards;
+	}
+
+	public long getWins(int player) {
+		return wins[player];
+	}
+
+	public long getTies(int player) {
+		return ties[player];
+	}
+
+	public long getLosses(int player) {
+		return boards - wins[player] - ties[player];
+	}
+
+	public double getWinPercent(int player) {
+		return 100.0 * wins[player] / boards;
+	}
+
+	public double getTiePercent(int player) {
+		return 100.0 * ties[player] / boards;
+	}
+
+	public double getLossPercent(int player) {
+		return 100.0 * getLosses(player) / boards;
+	}
+
+	// expected share of the pot, in percent
+	public double getEquity(int player) {
+		return 100.0 * shares[player] / boards;
+	}
+
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (int p = 0; p < wins.length; p++) {
+			sb.append(String.format("Player %d: win %.3f%%, tie %.3f%%, loss %.3f%%, equity %.3f%%%n",
+					p + 1, getWinPercent(p), getTiePercent(p), getLossPercent(p), getEquity(p)));
+		}
+		sb.append("Boards: ").append(boards);
+		return sb.toString();
+	}
+}
@@ -0,0 +1,260 @@
+package poker;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/***
+ * Texas Hold'em equity by Monte Carlo simulation or exhaustive enumeration
+ *
+ * given each player's two hole cards and an optional partial board, run-outs
+ * are dealt from the remaining deck and every player's seven card hand is
+ * scored with SevenCardLookup. the work is split across a ForkJoinPool.
+ *
+ * monteCarlo() samples run-outs: each task owns a SplittableRandom (no
+ * locking) and a copy of the remaining deck, and deals each run-out with a
+ * partial Fisher-Yates shuffle of that copy instead of building a new deck.
+ *
+ * exact() visits every run-out once, in colex order (the order Gosper's hack
+ * produces), so a task can start anywhere by unranking its first board with
+ * the combinatorial number system. the board keys are kept as running sums
+ * from the highest card down, and moving to the next board only recomputes
+ * the sums of the cards that changed, so shared parts of the board are not
+ * summed again
+ */
+public final class EquityCalculator {
+
+	// trials run by one task without splitting further
+	static final int TRIALS_PER_TASK = 1 << 16;
+
+	// boards enumerated by one task without splitting further
+	static final int BOARDS_PER_TASK = 1 << 15;
+
+	// BINOMIALS[n][k] = C(n, k) for n up to 52 and k up to 5
+	private static final long[][] BINOMIALS = new long[Card.NUM_CARDS + 1][6];
+
+	static {
+		for (int n = 0; n <= Card.NUM_CARDS; n++) {
+			BINOMIALS[n][0] = 1;
+			for (int k = 1; k <= 5 && k <= n; k++)
+				BINOMIALS[n][k] = BINOMIALS[n - 1][k - 1] + BINOMIALS[n - 1][k];
+		}
+	}
+
+	private EquityCalculator() {
+	}
+
+	// equity of each player's hole cards over random run-outs of the board
+	public static Equity monteCarlo(int[][] holeCards, int[] board, long trials) {
+		return monteCarlo(holeCards, board, trials, System.nanoTime(), ForkJoinPool.commonPool());
+	}
+
+	// same as above, reproducible for a given seed and pool parallelism
+	public static Equity monteCarlo(int[][] holeCards, int[] board, long trials, long seed, ForkJoinPool pool) {
+		if (trials <= 0) throw new IllegalArgumentException("at least one trial is needed, got " + trials);
+		Deal deal = new Deal(holeCards, board);
+		return pool.invoke(new MonteCarloTask(deal, trials, new SplittableRandom(seed)));
+	}
+
+	// exact equity of each player's hole cards over every run-out of the board
+	public static Equity exact(int[][] holeCards, int[] board) {
+		return exact(holeCards, board, ForkJoinPool.commonPool());
+	}
+
+	public static Equity exact(int[][] holeCards, int[] board, ForkJoinPool pool) {
+		Deal deal = new Deal(holeCards, board);
+		long boards = BINOMIALS[deal.deck.length][deal.missing];
+		return pool.invoke(new EnumerationTask(deal, 0, boards));
+	}
+
+	// the known cards of a spot, precomputed as seven card keys (see SevenCardLookup)
+	static class Deal {
+		final int numPlayers;
+		final long[] holeKeys;
+		final long[] holeMasks;
+		final long boardKey;
+		final long boardMask;
+		final int missing;
+		final int[] deck;
+
+		Deal(int[][] holeCards, int[] board) {
+			if (holeCards.length < 2)
+				throw new IllegalArgumentException("at least two players are needed");
+			if (board.length > 5)
+				throw new IllegalArgumentException("a board has at most five cards");
+
+			long dead = 0L;
+			numPlayers = holeCards.length;
+			holeKeys = new long[numPlayers];
+			holeMasks = new long[numPlayers];
+			for (int p = 0; p < numPlayers; p++) {
+				if (holeCards[p].length != 2)
+					throw new IllegalArgumentException("player " + (p + 1) + " needs two hole cards");
+				for (int card : holeCards[p]) {
+					dead = addCard(dead, card);
+					holeKeys[p] += SevenCardLookup.cardKey(card);
+					holeMasks[p] |= Card.bit(card);
+				}
+			}
+
+			long key = 0L;
+			long mask = 0L;
+			for (int card : board) {
+				dead = addCard(dead, card);
+				key += SevenCardLookup.cardKey(card);
+				mask |= Card.bit(card);
+			}
+			boardKey = key;
+			boardMask = mask;
+			missing = 5 - board.length;
+
+			deck = new int[Card.NUM_CARDS - Long.bitCount(dead)];
+			int n = 0;
+			for (int card = 0; card < Card.NUM_CARDS; card++) {
+				if ((dead & Card.bit(card)) == 0) deck[n++] = card;
+			}
+		}
+
+		private static long addCard(long dead, int card) {
+			if (card < 0 || card >= Card.NUM_CARDS)
+				throw new IllegalArgumentException("not a card: " + card);
+			if ((dead & Card.bit(card)) != 0)
+				throw new IllegalArgumentException("card dealt twice: " + Card.toString(card));
+			return dead | Card.bit(card);
+		}
+
+		// scores every player on a complete board and records the showdown
+		void showdown(long key, long mask, int[] scores, Equity equity) {
+			for (int p = 0; p < numPlayers; p++)
+				scores[p] = SevenCardLookup.score(key + holeKeys[p], mask | holeMasks[p]);
+			equity.record(scores);
+		}
+	}
+
+	// runs a number of trials, splitting them between forked tasks
+	private static class MonteCarloTask extends RecursiveTask<Equity> {
+		private static final long serialVersionUID = 1L;
+
+		private final Deal deal;
+		private final long trials;
+		private final SplittableRandom random;
+
+		MonteCarloTask(Deal deal, long trials, SplittableRandom random) {
+			this.deal = deal;
+			this.trials = trials;
+			this.random = random;
+		}
+
+		protected Equity compute() {
+			if (trials <= TRIALS_PER_TASK) return simulate();
+
+			long half = trials / 2;
+			MonteCarloTask left = new MonteCarloTask(deal, half, random.split());
+			MonteCarloTask right = new MonteCarloTask(deal, trials - half, random);
+			left.fork();
+			Equity equity = right.compute();
+			equity.add(left.join());
+			return equity;
+		}
+
+		private Equity simulate() {
+			int[] deck = deal.deck.clone();
+			int[] scores = new int[deal.numPlayers];
+			Equity equity = new Equity(deal.numPlayers);
+
+			for (long t = 0; t < trials; t++) {
+				long key = deal.boardKey;
+				long mask = deal.boardMask;
+
+				// partial Fisher-Yates: the first missing cards of the deck become the run-out
+				for (int i = 0; i < deal.missing; i++) {
+					int j = i + random.nextInt(deck.length - i);
+					int card = deck[j];
+					deck[j] = deck[i];
+					deck[i] = card;
+					key += SevenCardLookup.cardKey(card);
+					mask |= Card.bit(card);
+				}
+
+				deal.showdown(key, mask, scores, equity);
+			}
+			return equity;
+		}
+	}
+
+	// enumerates the run-outs with colex ranks from to to - 1, splitting the range between forked tasks
+	private static class EnumerationTask extends RecursiveTask<Equity> {
+		private static final long serialVersionUID = 1L;
+
+		private final Deal deal;
+		private final long from;
+		private final long to;
+
+		EnumerationTask(Deal deal, long from, long to) {
+			this.deal = deal;
+			this.from = from;
+			this.to = to;
+		}
+
+		protected Equity compute() {
+			if (to - from <= BOARDS_PER_TASK) return enumerate();
+
+			long mid = from + (to - from) / 2;
+			EnumerationTask left = new EnumerationTask(deal, from, mid);
+			left.fork();
+			Equity equity = new EnumerationTask(deal, mid, to).compute();
+			equity.add(left.join());
+			return equity;
+		}
+
+		private Equity enumerate() {
+			int k = deal.missing;
+			int n = deal.deck.length;
+			int[] scores = new int[deal.numPlayers];
+			Equity equity = new Equity(deal.numPlayers);
+
+			// the board is already complete
+			if (k == 0) {
+				deal.showdown(deal.boardKey, deal.boardMask, scores, equity);
+				return equity;
+			}
+
+			// unrank the first board: c[k - 1] > ... > c[0] are indices into the deck
+			int[] c = new int[k];
+			long rank = from;
+			int top = n;
+			for (int i = k - 1; i >= 0; i--) {
+				int index = top - 1;
+				while (BINOMIALS[index][i + 1] > rank) index--;
+				c[i] = index;
+				rank -= BINOMIALS[index][i + 1];
+				top = index;
+			}
+
+			// keys[i] and masks[i] hold the board plus deck cards c[k - 1] down to c[i]
+			long[] keys = new long[k + 1];
+			long[] masks = new long[k + 1];
+			keys[k] = deal.boardKey;
+			masks[k] = deal.boardMask;
+			int changed = k - 1;
+
+			for (long b = from; b < to; b++) {
+				for (int i = changed; i >= 0; i--) {
+					int card = deal.deck[c[i]];
+					keys[i] = keys[i + 1] + SevenCardLookup.cardKey(card);
+					masks[i] = masks[i + 1] | Card.bit(card);
+				}
+
+				deal.showdown(keys[0], masks[0], scores, equity);
+
+				// colex successor: bump the lowest index that has room and reset the ones below it
+				int i = 0;
+				while (i < k - 1 && c[i] + 1 == c[i + 1]) i++;
+				c[i]++;
+				for (int j = 0; j < i; j++) c[j] = j;
+				changed = i;
+			}
+			return equity;
+		}
+	}
+}
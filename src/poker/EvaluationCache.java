@@ -0,0 +1,150 @@
+package poker;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/***
+ * a cache of scores in front of another engine, for workloads that score
+ * the same hands over and over (one board against many players, replays)
+ *
+ * PokerHandEvaluator.setEngine(new EvaluationCache(SevenCardLookup.INSTANCE, 1 << 20))
+ * puts a cache in front of evalHand(). hands are keyed by their card mask,
+ * made canonical first: scores do not depend on which suit is which, so
+ * the suit lanes are sorted, and a hand that cannot make a flush (no suit
+ * with five cards) only depends on its rank counts, so all such hands with
+ * the same rank counts share a key. hands with repeated cards are passed
+ * straight to the engine.
+ *
+ * the table is direct-mapped: each key has one slot, and a new key simply
+ * replaces whatever was there, so the size is fixed. a slot is a single
+ * long holding the key's hash quotient and the score, read and written
+ * atomically, so threads share a cache without locks and a reader always
+ * sees a whole entry. hits and misses are counted with LongAdders
+ */
+public final class EvaluationCache implements EvaluationEngine {
+
+	// keys are at most 53 bits: a card mask plus the rank-count tag
+	private static final int KEY_BITS = 53;
+	private static final long KEY_MASK = (1L << KEY_BITS) - 1;
+
+	// set in the keys of hands that are keyed by rank counts
+	private static final long RANK_COUNT_KEY = 1L << 52;
+
+	// a slot is quotient << 25 | 1 << 24 | score, so the quotient (KEY_BITS - index bits)
+	// must fit in 39 bits
+	static final int MIN_CAPACITY = 1 << 14;
+	private static final int SCORE_BITS = 24;
+	private static final long FULL = 1L << SCORE_BITS;
+
+	private final EvaluationEngine engine;
+	private final AtomicLongArray slots;
+	private final int indexBits;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	// a cache of at least capacity slots (rounded up to a power of two, at least MIN_CAPACITY)
+	public EvaluationCache(EvaluationEngine engine, int capacity) {
+		if (capacity <= 0 || capacity > 1 << 30)
+			throw new IllegalArgumentException("capacity must be from 1 to 2^30, got " + capacity);
+
+		this.engine = engine;
+		int size = Math.max(MIN_CAPACITY, Integer.highestOneBit(capacity - 1) << 1);
+		this.slots = new AtomicLongArray(size);
+		this.indexBits = Integer.numberOfTrailingZeros(size);
+	}
+
+	public int score(int[] cards) {
+		long mask = Card.mask(cards);
+		// repeated cards have no mask to key by
+		if (Long.bitCount(mask) != cards.length) return engine.score(cards);
+
+		long hash = hash(canonicalKey(mask));
+		int index = (int) (hash & (slots.length() - 1));
+		long quotient = hash >>> indexBits;
+
+		long slot = slots.get(index);
+		if ((slot & FULL) != 0 && slot >>> (SCORE_BITS + 1) == quotient) {
+			hits.increment();
+			return (int) (slot & (FULL - 1));
+		}
+
+		misses.increment();
+		int score = engine.score(cards);
+		slots.lazySet(index, quotient << (SCORE_BITS + 1) | FULL | score);
+		return score;
+	}
+
+	// scores a set of distinct cards given as a mask (see Card)
+	public int score(long mask) {
+		return score(Card.fromMask(mask));
+	}
+
+	// the engine behind the cache
+	public EvaluationEngine getEngine() {
+		return engine;
+	}
+
+	public int capacity() {
+		return slots.length();
+	}
+
+	public long hits() {
+		return hits.sum();
+	}
+
+	public long misses() {
+		return misses.sum();
+	}
+
+	// empties the cache and resets the counters
+	public void clear() {
+		for (int i = 0; i < slots.length(); i++) slots.set(i, 0L);
+		hits.reset();
+		misses.reset();
+	}
+
+	public String toString() {
+		long h = hits();
+		long m = misses();
+		return "EvaluationCache[" + capacity() + " slots, " + h + " hits, " + m + " misses"
+				+ (h + m > 0 ? String.format(", %.1f%% hit rate", 100.0 * h / (h + m)) : "") + "]";
+	}
+
+	// a key that is the same for every set of cards with the same score as mask:
+	// the suit lanes in descending order, or, when no suit has five cards, the rank
+	// counts as lanes (lane k holds the ranks with more than k cards) plus a tag
+	static long canonicalKey(long mask) {
+		int s0 = Card.suitMask(mask, 0);
+		int s1 = Card.suitMask(mask, 1);
+		int s2 = Card.suitMask(mask, 2);
+		int s3 = Card.suitMask(mask, 3);
+
+		if (Integer.bitCount(s0) < 5 && Integer.bitCount(s1) < 5 && Integer.bitCount(s2) < 5
+				&& Integer.bitCount(s3) < 5) {
+			int once = s0 | s1 | s2 | s3;
+			int twice = (s0 & s1) | (s0 & s2) | (s0 & s3) | (s1 & s2) | (s1 & s3) | (s2 & s3);
+			int thrice = (s0 & s1 & s2) | (s0 & s1 & s3) | (s0 & s2 & s3) | (s1 & s2 & s3);
+			int four = s0 & s1 & s2 & s3;
+			return RANK_COUNT_KEY | once | (long) twice << 13 | (long) thrice << 26 | (long) four << 39;
+		}
+
+		// sort the lanes, largest first
+		int t;
+		if (s0 < s1) { t = s0; s0 = s1; s1 = t; }
+		if (s2 < s3) { t = s2; s2 = s3; s3 = t; }
+		if (s0 < s2) { t = s0; s0 = s2; s2 = t; }
+		if (s1 < s3) { t = s1; s1 = s3; s3 = t; }
+		if (s1 < s2) { t = s1; s1 = s2; s2 = t; }
+		return s0 | (long) s1 << 13 | (long) s2 << 26 | (long) s3 << 39;
+	}
+
+	// mixes a key into a hash of the same 53 bits; every step can be undone, so
+	// distinct keys have distinct hashes and a slot only needs the hash's upper bits
+	private static long hash(long key) {
+		long h = (key * 0x9E3779B97F4A7C15L) & KEY_MASK;
+		h ^= h >>> 29;
+		h = (h * 0xBF58476D1CE4E5B9L) & KEY_MASK;
+		h ^= h >>> 32;
+		return h;
+	}
+}
@@ -0,0 +1,13 @@
+package poker;
+
+/***
+ * a way of scoring poker hands that can be plugged in behind
+ * PokerHandEvaluator.evalHand(). every engine returns exactly the scores
+ * of the reference logic (see EvaluationInfo.getScore()), so engines can be
+ * swapped without changing any results
+ */
+public interface EvaluationEngine {
+
+	// scores a hand of encoded cards (see Card) without modifying the array
+	int score(int[] cards);
+}
@@ -0,0 +1,207 @@
+package poker;
+
+import java.util.Arrays;
+
+/***
+ * table driven evaluation of five card hands
+ *
+ * the 2,598,960 five card hands fall into 7,462 equivalence classes. a hand
+ * is mapped to its class with a perfect hash and at most a couple of array
+ * loads: hands with five distinct ranks are indexed by their 13-bit rank mask
+ * (one table for flushes, one for everything else) and hands with a paired
+ * rank are indexed by the combinatorial number of their sorted ranks.
+ * the tables are generated from the reference logic in PokerHandEvaluator,
+ * so the scores always agree with it. hands of any other size (and hands
+ * with repeated cards, which the tables do not cover) fall back to the
+ * reference engine
+ */
+public final class FiveCardLookup implements EvaluationEngine {
+
+	public static final FiveCardLookup INSTANCE = new FiveCardLookup();
+
+	// number of equivalence classes of single deck five card hands
+	public static final int NUM_CLASSES = 7462;
+
+	// number of multisets of five ranks, C(13 + 5 - 1, 5)
+	static final int NUM_RANK_MULTISETS = 6188;
+
+	// marks table entries that are not a single deck hand
+	private static final char NONE = 0xFFFF;
+
+	// score of each class, ascending, so a larger class is a better hand
+	private static final int[] CLASS_SCORES = new int[NUM_CLASSES];
+
+	// class of five distinct ranks of one suit / of mixed suits, by rank mask
+	private static final char[] FLUSHES = new char[8192];
+	private static final char[] UNIQUE = new char[8192];
+
+	// class of a hand with repeated ranks, by multiset index
+	private static final char[] PAIRED = new char[NUM_RANK_MULTISETS];
+
+	// BINOMIALS[n][k] = C(n, k) for the multiset index
+	static final int[][] BINOMIALS = new int[18][6];
+
+	static {
+		for (int n = 0; n < BINOMIALS.length; n++) {
+			BINOMIALS[n][0] = 1;
+			for (int k = 1; k <= Math.min(n, 5); k++)
+				BINOMIALS[n][k] = BINOMIALS[n - 1][k - 1] + (k <= n - 1 ? BINOMIALS[n - 1][k] : 0);
+		}
+		generate();
+	}
+
+	private FiveCardLookup() {
+	}
+
+	public int score(int[] cards) {
+		if (cards.length != 5) return PokerHandEvaluator.REFERENCE.score(cards);
+
+		int cls = handClass(cards[0], cards[1], cards[2], cards[3], cards[4]);
+		if (cls == NONE) return PokerHandEvaluator.REFERENCE.score(cards);
+		return CLASS_SCORES[cls];
+	}
+
+	// equivalence class of a single deck five card hand, 0 (7-5-4-3-2) to 7461 (royal flush)
+	public static int handClass(int[] cards) {
+		if (cards.length != 5)
+			throw new IllegalArgumentException("five cards expected, got " + cards.length);
+
+		int cls = handClass(cards[0], cards[1], cards[2], cards[3], cards[4]);
+		if (cls == NONE)
+			throw new IllegalArgumentException("repeated cards: " + Arrays.toString(cards));
+		return cls;
+	}
+
+	// score of an equivalence class (see EvaluationInfo.getScore())
+	public static int classScore(int cls) {
+		return CLASS_SCORES[cls];
+	}
+
+	// equivalence class with the given score
+	public static int classOf(int score) {
+		return Arrays.binarySearch(CLASS_SCORES, score);
+	}
+
+	// class of five encoded cards, or NONE when a card is repeated
+	static int handClass(int c0, int c1, int c2, int c3, int c4) {
+		int rankMask = (1 << (c0 >> 2)) | (1 << (c1 >> 2)) | (1 << (c2 >> 2))
+				| (1 << (c3 >> 2)) | (1 << (c4 >> 2));
+		boolean flush = (((c0 ^ c1) | (c0 ^ c2) | (c0 ^ c3) | (c0 ^ c4)) & 3) == 0;
+
+		if (Integer.bitCount(rankMask) == 5)
+			return flush ? FLUSHES[rankMask] : UNIQUE[rankMask];
+
+		// a paired flush can only come from repeated cards
+		if (flush) return NONE;
+
+		return PAIRED[multisetIndex(c0 >> 2, c1 >> 2, c2 >> 2, c3 >> 2, c4 >> 2)];
+	}
+
+	// class of five distinct ranks (0 = deuce) by rank mask, flush or not
+	static int distinctClass(int rankMask, boolean flush) {
+		return flush ? FLUSHES[rankMask] : UNIQUE[rankMask];
+	}
+
+	// class of five ranks of mixed suits with a repeated rank, by multiset index
+	static int pairedClass(int multisetIndex) {
+		return PAIRED[multisetIndex];
+	}
+
+	// perfect hash of a multiset of five ranks (0 through 12): after sorting,
+	// r0 <= r1 <= ... <= r4 maps to the distinct values r0 < r1 + 1 < ... < r4 + 4,
+	// which are ranked with the combinatorial number system
+	static int multisetIndex(int r0, int r1, int r2, int r3, int r4) {
+		int t;
+		// sorting network for five values
+		if (r0 > r1) { t = r0; r0 = r1; r1 = t; }
+		if (r3 > r4) { t = r3; r3 = r4; r4 = t; }
+		if (r2 > r4) { t = r2; r2 = r4; r4 = t; }
+		if (r2 > r3) { t = r2; r2 = r3; r3 = t; }
+		if (r0 > r3) { t = r0; r0 = r3; r3 = t; }
+		if (r0 > r2) { t = r0; r0 = r2; r2 = t; }
+		if (r1 > r4) { t = r1; r1 = r4; r4 = t; }
+		if (r1 > r3) { t = r1; r1 = r3; r3 = t; }
+		if (r1 > r2) { t = r1; r1 = r2; r2 = t; }
+
+		return sortedMultisetIndex(r0, r1, r2, r3, r4);
+	}
+
+	// multisetIndex() of ranks that are already sorted, r0 <= r1 <= ... <= r4
+	static int sortedMultisetIndex(int r0, int r1, int r2, int r3, int r4) {
+		return BINOMIALS[r0][1] + BINOMIALS[r1 + 1][2] + BINOMIALS[r2 + 2][3]
+				+ BINOMIALS[r3 + 3][4] + BINOMIALS[r4 + 4][5];
+	}
+
+	// fills the tables by scoring one representative hand per entry with the reference engine
+	private static void generate() {
+		int[] flushScores = new int[8192];
+		int[] uniqueScores = new int[8192];
+		int[] pairedScores = new int[NUM_RANK_MULTISETS];
+		Arrays.fill(pairedScores, -1);
+
+		int[] cards = new int[5];
+		for (int mask = 0; mask < 8192; mask++) {
+			if (Integer.bitCount(mask) != 5) continue;
+
+			int n = 0;
+			for (int r = 0; r < 13; r++) {
+				if ((mask & (1 << r)) != 0) cards[n++] = Card.of(r + 2, Card.HEARTS);
+			}
+			flushScores[mask] = PokerHandEvaluator.REFERENCE.score(cards);
+
+			// one off-suit card is enough to break the flush
+			cards[0] = Card.of(Card.rank(cards[0]), Card.SPADES);
+			uniqueScores[mask] = PokerHandEvaluator.REFERENCE.score(cards);
+		}
+
+		// every multiset of ranks with at most four of a rank and at least one pair,
+		// dealt with the copies of each rank in different suits
+		for (int r0 = 0; r0 < 13; r0++)
+		for (int r1 = r0; r1 < 13; r1++)
+		for (int r2 = r1; r2 < 13; r2++)
+		for (int r3 = r2; r3 < 13; r3++)
+		for (int r4 = r3; r4 < 13; r4++) {
+			if (r0 == r4) continue;
+			int[] ranks = {r0, r1, r2, r3, r4};
+			boolean paired = false;
+			for (int i = 0; i < 5; i++) {
+				int copies = 0;
+				for (int j = 0; j < i; j++) if (ranks[j] == ranks[i]) copies++;
+				if (copies > 0) paired = true;
+				cards[i] = Card.of(ranks[i] + 2, copies);
+			}
+			if (paired)
+				pairedScores[multisetIndex(r0, r1, r2, r3, r4)] = PokerHandEvaluator.REFERENCE.score(cards);
+		}
+
+		// the distinct scores, in order, are the equivalence classes
+		int[] all = new int[8192 * 2 + NUM_RANK_MULTISETS];
+		int n = 0;
+		for (int mask = 0; mask < 8192; mask++) {
+			if (Integer.bitCount(mask) != 5) continue;
+			all[n++] = flushScores[mask];
+			all[n++] = uniqueScores[mask];
+		}
+		for (int score : pairedScores) if (score >= 0) all[n++] = score;
+
+		Arrays.sort(all, 0, n);
+		int classes = 0;
+		for (int i = 0; i < n; i++) {
+			if (classes == 0 || all[i] != CLASS_SCORES[classes - 1]) CLASS_SCORES[classes++] = all[i];
+		}
+		if (classes != NUM_CLASSES)
+			throw new IllegalStateException("expected " + NUM_CLASSES + " classes, found " + classes);
+
+		Arrays.fill(FLUSHES, NONE);
+		Arrays.fill(UNIQUE, NONE);
+		Arrays.fill(PAIRED, NONE);
+		for (int mask = 0; mask < 8192; mask++) {
+			if (Integer.bitCount(mask) != 5) continue;
+			FLUSHES[mask] = (char) classOf(flushScores[mask]);
+			UNIQUE[mask] = (char) classOf(uniqueScores[mask]);
+		}
+		for (int i = 0; i < NUM_RANK_MULTISETS; i++) {
+			if (pairedScores[i] >= 0) PAIRED[i] = (char) classOf(pairedScores[i]);
+		}
+	}
+}
@@ -0,0 +1,401 @@
+package poker;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/***
+ * hand abstraction buckets: groups the (board, holding) situations of a
+ * street into a fixed number of buckets of hands that play alike
+ *
+ * the feature of a situation is its histogram of river hand strength
+ * (see HandStrength), read straight from a strength file that is
+ * memory-mapped, so the features never have to fit on the heap; only a
+ * char per situation (its bucket) and the centroids do. situations are
+ * clustered with k-means under earth mover's distance: for histograms over
+ * the same equal bins EMD is the L1 distance between their cumulative
+ * sums, so points and centroids are compared as cumulative histograms.
+ * each canonical board is weighted by the raw boards it stands for. a
+ * centroid is the weighted mean of its points' cumulative histograms,
+ * which is an approximation: the centre that minimises L1 is the per-bin
+ * weighted median, but the mean needs only running sums, and the
+ * assignment step still uses the exact EMD. centroids are seeded with
+ * k-means++ on a sample drawn in proportion to the board weights, and each
+ * iteration assigns every situation in parallel on a ForkJoinPool,
+ * stopping when almost no situation moves.
+ *
+ * the result is a table file (see TableFile) holding a direct index from
+ * the colex rank of a canonical board to its row, and a bucket per row
+ * and combo. load() only maps it, so a solver can start using it at once,
+ * and bucket() is the suit canonicalization plus two table loads.
+ *
+ * java -cp bin poker.HandClusters flops.bin 50 flop-buckets.bin
+ */
+public final class HandClusters {
+
+	// bucket of a combo that uses a board card
+	public static final char NO_BUCKET = 0xFFFF;
+
+	// version of the tables in a bucket file, bump it when their layout or contents change
+	static final int TABLES_VERSION = 1;
+
+	// stop when fewer than this share of the situations changes bucket
+	static final double CONVERGED = 0.001;
+
+	// points used to seed the centroids
+	private static final int SEED_SAMPLE = 20000;
+
+	// C(n, k) for n up to 52 and k up to 5, for colex ranks of boards
+	private static final int[][] BINOMIALS = new int[Card.NUM_CARDS + 1][6];
+
+	static {
+		for (int n = 0; n <= Card.NUM_CARDS; n++) {
+			BINOMIALS[n][0] = 1;
+			for (int k = 1; k <= 5 && k <= n; k++) BINOMIALS[n][k] = BINOMIALS[n - 1][k - 1] + BINOMIALS[n - 1][k];
+		}
+	}
+
+	private final int boardSize;
+	// row by colex rank of every board of boardSize cards, -1 unless it is a clustered canonical board
+	private final IntBuffer rows;
+	// bucket per row and combo
+	private final CharBuffer buckets;
+	private final int numBuckets;
+
+	private HandClusters(int boardSize, IntBuffer rows, CharBuffer buckets, int numBuckets) {
+		this.boardSize = boardSize;
+		this.rows = rows;
+		this.buckets = buckets;
+		this.numBuckets = numBuckets;
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 3) {
+			System.err.println("usage: java poker.HandClusters <strength file> <buckets> <bucket file> [iterations]");
+			System.exit(1);
+		}
+		int iterations = args.length > 3 ? Integer.parseInt(args[3]) : 100;
+		cluster(new File(args[0]), Integer.parseInt(args[1]), iterations, 1L, ForkJoinPool.commonPool(),
+				new File(args[2]), System.out);
+	}
+
+	// maps a bucket file written by cluster(); nothing is read until it is used
+	public static HandClusters load(File file) throws IOException {
+		Buffer[] tables = TableFile.map(file, TABLES_VERSION);
+		if (tables.length != 3 || !(tables[0] instanceof IntBuffer) || !(tables[1] instanceof IntBuffer)
+				|| !(tables[2] instanceof CharBuffer) || tables[0].limit() != 2)
+			throw new IOException(file + " is not a bucket file");
+		IntBuffer header = (IntBuffer) tables[0];
+		int boardSize = header.get(1);
+		if (boardSize < 3 || boardSize > 5 || tables[1].limit() != BINOMIALS[Card.NUM_CARDS][boardSize]
+				|| tables[2].limit() % Range.COMBOS != 0)
+			throw new IOException(file + " is not a bucket file");
+		return new HandClusters(boardSize, (IntBuffer) tables[1], (CharBuffer) tables[2], header.get(0));
+	}
+
+	public int getNumBuckets() {
+		return numBuckets;
+	}
+
+	// bucket of hole cards on a board of the clustered street, or NO_BUCKET if the board
+	// is not one that was clustered
+	public int bucket(int[] board, int[] hole) {
+		if (board.length != boardSize)
+			throw new IllegalArgumentException("the buckets are for boards of " + boardSize + " cards, got " + board.length);
+		if (hole.length != 2) throw new IllegalArgumentException("a holding has two cards, got " + hole.length);
+		long boardMask = Card.mask(board);
+		long holeMask = Card.mask(hole);
+		if (Long.bitCount(boardMask | holeMask) != boardSize + 2) throw new IllegalArgumentException("a card is dealt twice");
+		long[] canonical = SuitIsomorphism.canonical(boardMask, holeMask);
+		int row = rows.get(colexRank(canonical[0]));
+		if (row < 0) return NO_BUCKET;
+		int[] cards = Card.fromMask(canonical[1]);
+		return buckets.get(row * Range.COMBOS + PreflopEquity.comboIndex(cards[0], cards[1]));
+	}
+
+	// position of a board among all boards of its size, ordered by colex on the mask bits
+	private static int colexRank(long board) {
+		int rank = 0;
+		int i = 1;
+		for (long m = board; m != 0; m &= m - 1) rank += BINOMIALS[Long.numberOfTrailingZeros(m)][i++];
+		return rank;
+	}
+
+	// earth mover's distance between two histograms over the same bins, in bin widths
+	public static double emd(float[] a, float[] b) {
+		double distance = 0;
+		double carried = 0;
+		for (int i = 0; i < a.length; i++) {
+			carried += a[i] - b[i];
+			distance += Math.abs(carried);
+		}
+		return distance;
+	}
+
+	// clusters the situations of a strength file into k buckets and writes a bucket file;
+	// returns the centroids as histograms
+	public static float[][] cluster(File strengthFile, int k, int maxIterations, long seed, ForkJoinPool pool,
+			File bucketFile, PrintStream log) throws IOException {
+		if (k < 1 || k >= NO_BUCKET) throw new IllegalArgumentException("buckets must be from 1 to 65534, got " + k);
+
+		Features features = new Features(strengthFile);
+		int bins = features.bins;
+		char[] assignments = new char[features.numBoards * Range.COMBOS];
+		Arrays.fill(assignments, NO_BUCKET);
+
+		float[] centroids = seed(features, k, new SplittableRandom(seed));
+		for (int iteration = 1; iteration <= maxIterations; iteration++) {
+			long start = System.nanoTime();
+			Pass pass = pool.invoke(new AssignTask(features, centroids, k, assignments, 0, features.numBoards));
+
+			// move each centroid to the mean of its points; an empty one stays where it is
+			for (int c = 0; c < k; c++) {
+				if (pass.weights[c] == 0) continue;
+				for (int b = 0; b < bins; b++) centroids[c * bins + b] = (float) (pass.sums[c * bins + b] / pass.weights[c]);
+			}
+
+			log.printf("iteration %d: %d of %d situations moved, mean EMD %.4f, %d ms%n", iteration, pass.moved,
+					pass.points, pass.cost / pass.totalWeight / bins, (System.nanoTime() - start) / 1000000);
+			if (pass.moved <= CONVERGED * pass.points) break;
+		}
+
+		write(bucketFile, k, features, assignments);
+		TableFile.verify(bucketFile);
+		log.println("Wrote " + bucketFile);
+
+		float[][] histograms = new float[k][bins];
+		for (int c = 0; c < k; c++) {
+			float previous = 0;
+			for (int b = 0; b < bins; b++) {
+				histograms[c][b] = centroids[c * bins + b] - previous;
+				previous = centroids[c * bins + b];
+			}
+		}
+		return histograms;
+	}
+
+	// k-means++ on a sample of the situations: each centroid after the first is drawn with
+	// probability in proportion to the distance to the nearest one already chosen
+	private static float[] seed(Features features, int k, SplittableRandom random) {
+		int bins = features.bins;
+
+		// boards are drawn in proportion to the raw boards they stand for, as the
+		// clustering weights them, so rare boards are not over-sampled
+		long[] cumulative = new long[features.numBoards];
+		long total = 0;
+		for (int b = 0; b < features.numBoards; b++) cumulative[b] = total += features.weight(b);
+		if (total == 0) throw new IllegalArgumentException("the strength file has no boards");
+
+		int sampleSize = Math.max(SEED_SAMPLE, 20 * k);
+		float[] sample = new float[sampleSize * bins];
+		int n = 0;
+		for (int attempt = 0; n < sampleSize && attempt < 100 * sampleSize; attempt++) {
+			int board = Arrays.binarySearch(cumulative, random.nextLong(total) + 1);
+			if (board < 0) board = -board - 1;
+			int combo = random.nextInt(Range.COMBOS);
+			if (features.cdf(board, combo, sample, n * bins)) n++;
+		}
+		if (n == 0) throw new IllegalArgumentException("the strength file has no situations");
+
+		float[] centroids = new float[k * bins];
+		double[] nearest = new double[n];
+		Arrays.fill(nearest, Double.MAX_VALUE);
+		int chosen = random.nextInt(n);
+		for (int c = 0; c < k; c++) {
+			System.arraycopy(sample, chosen * bins, centroids, c * bins, bins);
+
+			double sum = 0;
+			for (int p = 0; p < n; p++) {
+				nearest[p] = Math.min(nearest[p], distance(sample, p * bins, centroids, c * bins, bins));
+				sum += nearest[p];
+			}
+			double target = random.nextDouble() * sum;
+			chosen = 0;
+			while (chosen < n - 1 && (target -= nearest[chosen]) > 0) chosen++;
+		}
+		return centroids;
+	}
+
+	// L1 distance between two cumulative histograms, the EMD of the histograms
+	private static double distance(float[] a, int aOffset, float[] b, int bOffset, int bins) {
+		double distance = 0;
+		for (int i = 0; i < bins; i++) distance += Math.abs(a[aOffset + i] - b[bOffset + i]);
+		return distance;
+	}
+
+	// writes the header (k, board size), the row of each board by colex rank, and the
+	// buckets, one row per board of the strength file in its order
+	private static void write(File file, int k, Features features, char[] assignments) throws IOException {
+		int boardSize = Long.bitCount(features.board(0));
+		int[] rows = new int[BINOMIALS[Card.NUM_CARDS][boardSize]];
+		Arrays.fill(rows, -1);
+		for (int b = 0; b < features.numBoards; b++) rows[colexRank(features.board(b))] = b;
+		TableFile.write(file, TABLES_VERSION, IntBuffer.wrap(new int[] {k, boardSize}), IntBuffer.wrap(rows),
+				CharBuffer.wrap(assignments));
+	}
+
+	// the histograms of a strength file written by HandStrength.run(), mapped in pieces of
+	// whole boards, since a single mapping is limited to 2 GB
+	static class Features {
+		final int bins;
+		final int numBoards;
+		private final long recordBytes;
+		private final int boardsPerSegment;
+		private final ByteBuffer[] segments;
+
+		Features(File file) throws IOException {
+			RandomAccessFile raf = new RandomAccessFile(file, "r");
+			try {
+				if (raf.length() < HandStrength.HEADER_BYTES || raf.readInt() != HandStrength.MAGIC)
+					throw new IOException(file + " is not a hand strength file");
+				// the board size, which the board masks carry too
+				raf.readInt();
+				bins = raf.readInt();
+				numBoards = raf.readInt();
+				recordBytes = HandStrength.recordBytes(bins);
+				if (raf.length() != HandStrength.recordOffset(numBoards, bins))
+					throw new IOException(file + " is truncated");
+
+				boardsPerSegment = (int) Math.max(1, (1 << 30) / recordBytes);
+				segments = new ByteBuffer[(numBoards + boardsPerSegment - 1) / boardsPerSegment];
+				FileChannel channel = raf.getChannel();
+				for (int s = 0; s < segments.length; s++) {
+					int boards = Math.min(boardsPerSegment, numBoards - s * boardsPerSegment);
+					MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY,
+							HandStrength.recordOffset(s * boardsPerSegment, bins), boards * recordBytes);
+					segments[s] = segment;
+				}
+			} finally {
+				raf.close();
+			}
+		}
+
+		long board(int board) {
+			return segments[board / boardsPerSegment].getLong(offset(board));
+		}
+
+		int weight(int board) {
+			return segments[board / boardsPerSegment].getInt(offset(board) + 8);
+		}
+
+		// writes the cumulative histogram of a situation into cdf at offset; false if the combo
+		// uses a board card
+		boolean cdf(int board, int combo, float[] cdf, int offset) {
+			ByteBuffer segment = segments[board / boardsPerSegment];
+			int position = offset(board) + 12 + 4 * combo * (3 + bins);
+			// a blocked combo has no EHS
+			if (Float.isNaN(segment.getFloat(position + 4))) return false;
+
+			float sum = 0;
+			for (int b = 0; b < bins; b++) {
+				sum += segment.getFloat(position + 12 + 4 * b);
+				cdf[offset + b] = sum;
+			}
+			return true;
+		}
+
+		private int offset(int board) {
+			return (int) ((board % boardsPerSegment) * recordBytes);
+		}
+	}
+
+	// totals of one assignment pass over some boards
+	private static class Pass {
+		final double[] sums;
+		final double[] weights;
+		double cost;
+		double totalWeight;
+		long points;
+		long moved;
+
+		Pass(int k, int bins) {
+			sums = new double[k * bins];
+			weights = new double[k];
+		}
+
+		void add(Pass other) {
+			for (int i = 0; i < sums.length; i++) sums[i] += other.sums[i];
+			for (int i = 0; i < weights.length; i++) weights[i] += other.weights[i];
+			cost += other.cost;
+			totalWeight += other.totalWeight;
+			points += other.points;
+			moved += other.moved;
+		}
+	}
+
+	// assigns the situations of boards from to to - 1 to their nearest centroids
+	private static class AssignTask extends RecursiveTask<Pass> {
+		private static final long serialVersionUID = 1L;
+
+		// boards assigned by one task without splitting further
+		private static final int BOARDS_PER_TASK = 4;
+
+		private final Features features;
+		private final float[] centroids;
+		private final int k;
+		private final char[] assignments;
+		private final int from;
+		private final int to;
+
+		AssignTask(Features features, float[] centroids, int k, char[] assignments, int from, int to) {
+			this.features = features;
+			this.centroids = centroids;
+			this.k = k;
+			this.assignments = assignments;
+			this.from = from;
+			this.to = to;
+		}
+
+		protected Pass compute() {
+			if (to - from > BOARDS_PER_TASK) {
+				int mid = (from + to) >>> 1;
+				AssignTask low = new AssignTask(features, centroids, k, assignments, from, mid);
+				low.fork();
+				Pass pass = new AssignTask(features, centroids, k, assignments, mid, to).compute();
+				pass.add(low.join());
+				return pass;
+			}
+
+			int bins = features.bins;
+			Pass pass = new Pass(k, bins);
+			float[] cdf = new float[bins];
+			for (int board = from; board < to; board++) {
+				int weight = features.weight(board);
+				for (int combo = 0; combo < Range.COMBOS; combo++) {
+					if (!features.cdf(board, combo, cdf, 0)) continue;
+
+					int best = 0;
+					double bestDistance = Double.MAX_VALUE;
+					for (int c = 0; c < k; c++) {
+						double d = distance(cdf, 0, centroids, c * bins, bins);
+						if (d < bestDistance) {
+							bestDistance = d;
+							best = c;
+						}
+					}
+
+					int situation = board * Range.COMBOS + combo;
+					if (assignments[situation] != best) pass.moved++;
+					assignments[situation] = (char) best;
+					pass.points++;
+					pass.cost += weight * bestDistance;
+					pass.totalWeight += weight;
+					pass.weights[best] += weight;
+					for (int b = 0; b < bins; b++) pass.sums[best * bins + b] += weight * cdf[b];
+				}
+			}
+			return pass;
+		}
+	}
+}
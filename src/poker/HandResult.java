@@ -0,0 +1,57 @@
+package poker;
+
+import poker.PokerHandEvaluator.Category;
+
+/***
+ * mutable, reusable holder for the result of an evaluation
+ *
+ * a caller keeps one of these and passes it to ScratchEvaluator.evaluate()
+ * for every hand, so evaluating does not allocate. cards used and kickers
+ * are card ranks in ascending order, like EvaluationInfo
+ */
+public class HandResult {
+	private int score;
+	private final int[] cardsUsed = new int[5];
+	private final int[] kickers = new int[5];
+	private int numCardsUsed;
+	private int numKickers;
+
+	// stores a score and unpacks its cards used and kickers
+	public void set(int score) {
+		this.score = score;
+		int counts = PokerHandEvaluator.decodeScore(score, cardsUsed, kickers);
+		numCardsUsed = counts >>> 8;
+		numKickers = counts & 0xFF;
+	}
+
+	public int getScore() {
+		return score;
+	}
+
+	public Category getCategory() {
+		return PokerHandEvaluator.categoryOf(score);
+	}
+
+	public int getNumCardsUsed() {
+		return numCardsUsed;
+	}
+
+	// rank of the i-th card used
+	public int getCardUsed(int i) {
+		return cardsUsed[i];
+	}
+
+	public int getNumKickers() {
+		return numKickers;
+	}
+
+	// rank of the i-th kicker
+	public int getKicker(int i) {
+		return kickers[i];
+	}
+
+	// copies the result into a new EvaluationInfo (this allocates)
+	public PokerHandEvaluator.EvaluationInfo toEvaluationInfo() {
+		return new PokerHandEvaluator.EvaluationInfo(score);
+	}
+}
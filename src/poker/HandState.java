@@ -0,0 +1,146 @@
+package poker;
+
+import poker.PokerHandEvaluator.Category;
+
+/***
+ * incremental hand state for dealing a hand a card at a time
+ *
+ * cards are added and removed one at a time, and the state keeps the
+ * running card mask and seven card key (see SevenCardLookup), so nothing is
+ * re-sorted or re-counted when a street is dealt.
+ * the score is computed from the mask the first time it is asked for after
+ * a change (one table lookup for seven cards, a few bit operations
+ * otherwise) and kept until the next change.
+ * push() and pop() add and take back cards in stack order, for walking a
+ * deal tree; a pushed card can only be taken back with pop(). the cards of
+ * a state are distinct, and a state is not thread-safe
+ */
+public class HandState {
+	private long mask;
+	private long key;
+
+	// cards in the order they were pushed, and their mask
+	private final int[] stack = new int[Card.NUM_CARDS];
+	private int depth;
+	private long pushed;
+
+	// score of the current cards, or -1 until it is computed
+	private int score = -1;
+
+	public HandState() {
+	}
+
+	// starts from a set of cards
+	public HandState(int... cards) {
+		for (int card : cards) add(card);
+	}
+
+	// adds a card that is not in the hand yet
+	public void add(int card) {
+		long bit = Card.bit(card);
+		if ((mask & bit) != 0)
+			throw new IllegalArgumentException("card already in hand: " + Card.toString(card));
+
+		mask |= bit;
+		key += SevenCardLookup.cardKey(card);
+		score = -1;
+	}
+
+	// removes a card that is in the hand and was not pushed
+	public void remove(int card) {
+		if ((pushed & Card.bit(card)) != 0)
+			throw new IllegalArgumentException("card was pushed, pop it instead: " + Card.toString(card));
+		take(card);
+	}
+
+	// adds a card and remembers it for pop()
+	public void push(int card) {
+		add(card);
+		stack[depth++] = card;
+		pushed |= Card.bit(card);
+	}
+
+	// removes the card pushed last and returns it
+	public int pop() {
+		if (depth == 0) throw new IllegalStateException("no card to pop");
+		int card = stack[--depth];
+		pushed &= ~Card.bit(card);
+		take(card);
+		return card;
+	}
+
+	private void take(int card) {
+		long bit = Card.bit(card);
+		if ((mask & bit) == 0)
+			throw new IllegalArgumentException("card not in hand: " + Card.toString(card));
+
+		mask &= ~bit;
+		key -= SevenCardLookup.cardKey(card);
+		score = -1;
+	}
+
+	// removes every card
+	public void clear() {
+		mask = 0L;
+		key = 0L;
+		depth = 0;
+		pushed = 0L;
+		score = -1;
+	}
+
+	// score of the best hand the current cards make (see EvaluationInfo.getScore())
+	public int getScore() {
+		if (score < 0) {
+			score = Long.bitCount(mask) == 7 ? SevenCardLookup.score(key, mask) : BitboardEvaluator.score(mask);
+		}
+		return score;
+	}
+
+	public Category getCategory() {
+		return PokerHandEvaluator.categoryOf(getScore());
+	}
+
+	// writes the current best hand into a result
+	public void evaluate(HandResult result) {
+		result.set(getScore());
+	}
+
+	public int size() {
+		return Long.bitCount(mask);
+	}
+
+	public boolean contains(int card) {
+		return (mask & Card.bit(card)) != 0;
+	}
+
+	// the current cards as a mask (see Card)
+	public long getMask() {
+		return mask;
+	}
+
+	// sum of the seven card keys of the current cards (see SevenCardLookup.cardKey())
+	public long getKey() {
+		return key;
+	}
+
+	// number of cards of a rank (2 to 14)
+	public int getRankCount(int rank) {
+		int count = 0;
+		for (int suit = 0; suit < 4; suit++) count += (int) (mask >>> (suit * 13 + rank - 2)) & 1;
+		return count;
+	}
+
+	// number of cards of a suit (see Card)
+	public int getSuitCount(int suit) {
+		return Integer.bitCount(Card.suitMask(mask, suit));
+	}
+
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (int card : Card.fromMask(mask)) {
+			if (sb.length() > 0) sb.append(' ');
+			sb.append(Card.toString(card));
+		}
+		return sb.toString();
+	}
+}
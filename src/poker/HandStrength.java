@@ -0,0 +1,257 @@
+package poker;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/***
+ * hand strength of every holding on a board, against a random hand
+ *
+ * for each of the 1,326 combos on a flop, turn or river board:
+ * - HS: the share of the pot won against one random hand if the cards
+ *   were shown down now
+ * - EHS: the same over every run-out to the river (the equity against a
+ *   random hand)
+ * - EHS2: the mean of the squared river HS over the run-outs, which
+ *   rewards hands whose strength swings (draws) over steady ones
+ * - a histogram of the river HS over the run-outs, in equal bins from 0 to 1
+ * combos that use a board card have NaN strengths and an empty histogram.
+ *
+ * a board is done with one Range.Sweep per complete board: every combo is
+ * scored once, the combos are sorted once, and a single sweep gives every
+ * combo's share at once, so the work per board is the same whether one
+ * holding is wanted or all of them.
+ *
+ * run() does every canonical board (see SuitIsomorphism) of a size in
+ * parallel batches and streams the results to a file, in board order:
+ *   header: MAGIC, board size, bins, number of boards (ints)
+ *   each board: its canonical card mask (long), its weight (int), then per
+ *   combo HS, EHS, EHS2 and the histogram (floats)
+ * big endian (DataOutputStream), every board record the same size, so a
+ * board's record can be found by position (see recordOffset())
+ *
+ * to write all flops with 10 bins: java -cp bin poker.HandStrength 3 10 flops.bin
+ */
+public final class HandStrength {
+
+	// "PHS1"
+	static final int MAGIC = 0x50485331;
+
+	static final int HEADER_BYTES = 16;
+
+	private static final Range ANY = Range.parse("any");
+
+	private final long board;
+	private final int weight;
+	private final int bins;
+	private final float[] hs = new float[Range.COMBOS];
+	private final float[] ehs = new float[Range.COMBOS];
+	private final float[] ehs2 = new float[Range.COMBOS];
+	private final float[] histograms;
+
+	private HandStrength(long board, int weight, int bins) {
+		this.board = board;
+		this.weight = weight;
+		this.bins = bins;
+		this.histograms = new float[Range.COMBOS * bins];
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length != 3) {
+			System.err.println("usage: java poker.HandStrength <board size 3-5> <bins> <file>");
+			System.exit(1);
+		}
+		run(Integer.parseInt(args[0]), Integer.parseInt(args[1]), new File(args[2]), ForkJoinPool.commonPool(),
+				Integer.MAX_VALUE, System.out);
+	}
+
+	// computes the strengths of every combo on a board of three to five cards (a card mask)
+	public static HandStrength compute(long board, int bins) {
+		int size = Long.bitCount(board);
+		if (size < 3 || size > 5) throw new IllegalArgumentException("a board has three to five cards, got " + size);
+		if (bins < 1) throw new IllegalArgumentException("a histogram needs at least one bin");
+
+		HandStrength strength = new HandStrength(board, SuitIsomorphism.weight(board), bins);
+		Range.Sweep sweep = new Range.Sweep(ANY, ANY);
+		double[] shares = new double[Range.COMBOS];
+		double[] totals = new double[Range.COMBOS];
+
+		long key = 0L;
+		for (int card : Card.fromMask(board)) key += SevenCardLookup.cardKey(card);
+		sweep.showdown(key, board, shares, totals);
+		for (int combo = 0; combo < Range.COMBOS; combo++)
+			strength.hs[combo] = totals[combo] > 0 ? (float) (shares[combo] / totals[combo]) : Float.NaN;
+
+		double[] sums = new double[Range.COMBOS];
+		double[] squares = new double[Range.COMBOS];
+		int[] runOuts = new int[Range.COMBOS];
+		int[] deck = Card.fromMask(~board & ((1L << Card.NUM_CARDS) - 1));
+		if (size == 5) strength.river(sweep, key, board, shares, totals, sums, squares, runOuts);
+		for (int i = 0; size < 5 && i < deck.length; i++) {
+			long turnKey = key + SevenCardLookup.cardKey(deck[i]);
+			long turn = board | Card.bit(deck[i]);
+			if (size == 4) {
+				strength.river(sweep, turnKey, turn, shares, totals, sums, squares, runOuts);
+				continue;
+			}
+			for (int j = i + 1; j < deck.length; j++) {
+				strength.river(sweep, turnKey + SevenCardLookup.cardKey(deck[j]), turn | Card.bit(deck[j]), shares,
+						totals, sums, squares, runOuts);
+			}
+		}
+
+		for (int combo = 0; combo < Range.COMBOS; combo++) {
+			if (runOuts[combo] == 0) {
+				strength.ehs[combo] = Float.NaN;
+				strength.ehs2[combo] = Float.NaN;
+				continue;
+			}
+			strength.ehs[combo] = (float) (sums[combo] / runOuts[combo]);
+			strength.ehs2[combo] = (float) (squares[combo] / runOuts[combo]);
+			for (int b = 0; b < bins; b++) strength.histograms[combo * bins + b] /= runOuts[combo];
+		}
+		return strength;
+	}
+
+	// sweeps one complete board and adds every live combo's river HS to the running totals
+	private void river(Range.Sweep sweep, long key, long mask, double[] shares, double[] totals, double[] sums,
+			double[] squares, int[] runOuts) {
+		Arrays.fill(shares, 0);
+		Arrays.fill(totals, 0);
+		sweep.showdown(key, mask, shares, totals);
+		for (int combo = 0; combo < Range.COMBOS; combo++) {
+			if (totals[combo] == 0) continue;
+			double hs = shares[combo] / totals[combo];
+			sums[combo] += hs;
+			squares[combo] += hs * hs;
+			runOuts[combo]++;
+			histograms[combo * bins + Math.min(bins - 1, (int) (hs * bins))]++;
+		}
+	}
+
+	// the canonical board
+	public long getBoard() {
+		return board;
+	}
+
+	// raw boards the canonical board stands for
+	public int getWeight() {
+		return weight;
+	}
+
+	public float getHS(int combo) {
+		return hs[combo];
+	}
+
+	public float getEHS(int combo) {
+		return ehs[combo];
+	}
+
+	public float getEHS2(int combo) {
+		return ehs2[combo];
+	}
+
+	// share of the run-outs whose river HS falls in each bin
+	public float[] getHistogram(int combo) {
+		return Arrays.copyOfRange(histograms, combo * bins, (combo + 1) * bins);
+	}
+
+	// writes the strengths of every canonical board of a size to a file, stopping after
+	// maxBoards; returns the number of boards written
+	public static int run(int boardSize, int bins, File file, ForkJoinPool pool, int maxBoards, PrintStream log)
+			throws IOException {
+		final long[] boards = canonicalBoards(boardSize);
+		int numBoards = Math.min(boards.length, maxBoards);
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(boardSize);
+			out.writeInt(bins);
+			out.writeInt(numBoards);
+
+			final HandStrength[] batch = new HandStrength[Math.max(4, 4 * pool.getParallelism())];
+			long start = System.nanoTime();
+			for (int done = 0; done < numBoards; ) {
+				int count = Math.min(batch.length, numBoards - done);
+				pool.invoke(new BoardTask(boards, done, batch, 0, count, bins));
+				for (int i = 0; i < count; i++) batch[i].write(out);
+				done += count;
+				log.printf("%d of %d boards, %.1f ms per board%n", done, numBoards, (System.nanoTime() - start) / 1e6 / done);
+			}
+		} finally {
+			out.close();
+		}
+		return numBoards;
+	}
+
+	// byte offset of a board's record in a file written by run()
+	public static long recordOffset(int board, int bins) {
+		return HEADER_BYTES + (long) board * recordBytes(bins);
+	}
+
+	static long recordBytes(int bins) {
+		return 12 + 4L * Range.COMBOS * (3 + bins);
+	}
+
+	private void write(DataOutputStream out) throws IOException {
+		out.writeLong(board);
+		out.writeInt(weight);
+		for (int combo = 0; combo < Range.COMBOS; combo++) {
+			out.writeFloat(hs[combo]);
+			out.writeFloat(ehs[combo]);
+			out.writeFloat(ehs2[combo]);
+			for (int b = 0; b < bins; b++) out.writeFloat(histograms[combo * bins + b]);
+		}
+	}
+
+	// canonical boards of a size, in the order forEachClass() visits them
+	static long[] canonicalBoards(int boardSize) {
+		final long[][] boards = {new long[1024]};
+		final int[] n = new int[1];
+		SuitIsomorphism.forEachClass(new int[] {boardSize}, new SuitIsomorphism.ClassVisitor() {
+			public void visit(long[] rounds, int weight) {
+				if (n[0] == boards[0].length) boards[0] = Arrays.copyOf(boards[0], 2 * n[0]);
+				boards[0][n[0]++] = rounds[0];
+			}
+		});
+		return Arrays.copyOf(boards[0], n[0]);
+	}
+
+	// computes boards[first + i] into batch[i] for i from from to to - 1
+	private static class BoardTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final long[] boards;
+		private final int first;
+		private final HandStrength[] batch;
+		private final int from;
+		private final int to;
+		private final int bins;
+
+		BoardTask(long[] boards, int first, HandStrength[] batch, int from, int to, int bins) {
+			this.boards = boards;
+			this.first = first;
+			this.batch = batch;
+			this.from = from;
+			this.to = to;
+			this.bins = bins;
+		}
+
+		protected void compute() {
+			if (to - from == 1) {
+				batch[from] = HandStrength.compute(boards[first + from], bins);
+				return;
+			}
+
+			int mid = (from + to) >>> 1;
+			invokeAll(new BoardTask(boards, first, batch, from, mid, bins), new BoardTask(boards, first, batch, mid, to, bins));
+		}
+	}
+}
@@ -0,0 +1,199 @@
+package poker;
+
+/***
+ * low hand rankings for split pot and lowball games
+ *
+ * ace-to-five (Omaha and Stud Hi/Lo): aces are low, straights and flushes
+ * do not count, and the low is the five lowest distinct ranks. a hand with
+ * fewer than five distinct ranks has no low, and for eight-or-better a low
+ * must be 8 high or lower.
+ * deuce-to-seven (triple draw): aces are high and straights and flushes
+ * count against the hand, so the best low is the worst high hand; A-2-3-4-5
+ * is ace high, not a straight.
+ *
+ * like high scores, low scores are single ints where a larger score is a
+ * better hand, and NO_LOW (0) means there is no low. both rankings come
+ * from tables indexed by rank mask, generated when the class is loaded.
+ * hiLo() scores the high and the eight-or-better low of a hand in one call:
+ * the suit masks are extracted once and feed both the high evaluation and
+ * a low table indexed by the (aces high) rank mask they or to, so the low
+ * costs one extra load rather than a second pass over the cards
+ */
+public final class LowballEvaluator {
+
+	// score of a hand that has no (qualifying) low
+	public static final int NO_LOW = 0;
+
+	// ace-to-five low by ace-low rank mask (bit 0 = ace, bit 12 = king): 0x2000 minus
+	// the mask of the five lowest ranks, so a lower top card makes a larger score
+	private static final char[] ACE_TO_FIVE = new char[8192];
+
+	// a low of five ranks from ace to eight has a mask below this
+	private static final int EIGHT_OR_BETTER = 1 << 8;
+
+	// eight-or-better ace-to-five low by the usual aces high rank mask (see Card), for hiLo()
+	private static final char[] EIGHT_OR_BETTER_BY_RANKS = new char[8192];
+
+	private static final String[] LOW_RANK_NAMES = {
+		"A", "2", "3", "4", "5", "6", "7", "8", "9", "10", "J", "Q", "K"
+	};
+
+	// deuce-to-seven score of five distinct ranks (0 = deuce), of mixed suits / of one suit
+	private static final int[] DEUCE_TO_SEVEN = new int[8192];
+	private static final int[] DEUCE_TO_SEVEN_FLUSH = new int[8192];
+
+	// rank mask of A-2-3-4-5 with aces high
+	private static final int WHEEL = 0x100F;
+
+	// deuce-to-seven scores are this minus the high score
+	private static final int DEUCE_TO_SEVEN_BASE = 1 << 24;
+
+	static {
+		for (int mask = 0; mask < 8192; mask++) {
+			if (Integer.bitCount(mask) >= 5) ACE_TO_FIVE[mask] = (char) (0x2000 - lowestRanks(mask, 5));
+			if (Integer.bitCount(mask) != 5) continue;
+
+			int[] cards = new int[5];
+			int n = 0;
+			for (int r = 0; r < 13; r++) {
+				if ((mask & (1 << r)) != 0) cards[n++] = Card.of(r + 2, Card.HEARTS);
+			}
+			int flush = PokerHandEvaluator.REFERENCE.score(cards);
+			cards[0] = Card.of(Card.rank(cards[0]), Card.SPADES);
+			int mixed = PokerHandEvaluator.REFERENCE.score(cards);
+
+			// the wheel is only ace high
+			if (mask == WHEEL) {
+				flush = BitboardEvaluator.FLUSH | BitboardEvaluator.topRanks(mask, 5);
+				mixed = BitboardEvaluator.HIGH_CARD | BitboardEvaluator.topRanks(mask, 5);
+			}
+			DEUCE_TO_SEVEN_FLUSH[mask] = DEUCE_TO_SEVEN_BASE - flush;
+			DEUCE_TO_SEVEN[mask] = DEUCE_TO_SEVEN_BASE - mixed;
+		}
+
+		// indexed by the aces high rank mask, so moved into the ace-low order
+		for (int ranks = 0; ranks < 8192; ranks++)
+			EIGHT_OR_BETTER_BY_RANKS[ranks] = (char) eightOrBetter(ACE_TO_FIVE[((ranks << 1) | (ranks >>> 12)) & 0x1FFF]);
+	}
+
+	private LowballEvaluator() {
+	}
+
+	// ace-to-five low of a set of distinct cards (see Card), or NO_LOW with fewer than five ranks
+	public static int aceToFive(long mask) {
+		return ACE_TO_FIVE[aceLowRanks(mask)];
+	}
+
+	// ace-to-five low if it is 8 high or lower, otherwise NO_LOW
+	public static int aceToFiveEight(long mask) {
+		return eightOrBetter(ACE_TO_FIVE[aceLowRanks(mask)]);
+	}
+
+	// an ace-to-five low if it qualifies for eight-or-better, otherwise NO_LOW
+	public static int eightOrBetter(int low) {
+		return low > 0x2000 - EIGHT_OR_BETTER ? low : NO_LOW;
+	}
+
+	// ace-to-five low of five distinct ranks given as an ace-low rank mask
+	static int aceToFiveOfRanks(int aceLowRanks) {
+		return ACE_TO_FIVE[aceLowRanks];
+	}
+
+	// deuce-to-seven low of the best five of a set of distinct cards, or NO_LOW with fewer than five
+	public static int deuceToSeven(long mask) {
+		int n = Long.bitCount(mask);
+		if (n < 5) return NO_LOW;
+		if (n == 5) return deuceToSevenFive(mask);
+
+		// try every five card subset
+		int[] cards = Card.fromMask(mask);
+		int best = NO_LOW;
+		for (int a = 0; a < n; a++)
+			for (int b = a + 1; b < n; b++)
+				for (int c = b + 1; c < n; c++)
+					for (int d = c + 1; d < n; d++)
+						for (int e = d + 1; e < n; e++) {
+							long five = Card.bit(cards[a]) | Card.bit(cards[b]) | Card.bit(cards[c])
+									| Card.bit(cards[d]) | Card.bit(cards[e]);
+							best = Math.max(best, deuceToSevenFive(five));
+						}
+		return best;
+	}
+
+	// deuce-to-seven low of exactly five distinct cards
+	private static int deuceToSevenFive(long mask) {
+		int s0 = Card.suitMask(mask, 0);
+		int s1 = Card.suitMask(mask, 1);
+		int s2 = Card.suitMask(mask, 2);
+		int s3 = Card.suitMask(mask, 3);
+		int ranks = s0 | s1 | s2 | s3;
+
+		if (Integer.bitCount(ranks) == 5) {
+			boolean flush = s0 == ranks || s1 == ranks || s2 == ranks || s3 == ranks;
+			return flush ? DEUCE_TO_SEVEN_FLUSH[ranks] : DEUCE_TO_SEVEN[ranks];
+		}
+
+		// a paired hand cannot be a straight or a flush, so it ranks as in high hands
+		return DEUCE_TO_SEVEN_BASE - BitboardEvaluator.score(mask);
+	}
+
+	// high score (see EvaluationInfo.getScore()) and eight-or-better ace-to-five low
+	// of a set of distinct cards, packed as high << 32 | low
+	public static long hiLo(long mask) {
+		int s0 = Card.suitMask(mask, 0);
+		int s1 = Card.suitMask(mask, 1);
+		int s2 = Card.suitMask(mask, 2);
+		int s3 = Card.suitMask(mask, 3);
+		return ((long) BitboardEvaluator.score(s0, s1, s2, s3, Long.bitCount(mask)) << 32)
+				| EIGHT_OR_BETTER_BY_RANKS[s0 | s1 | s2 | s3];
+	}
+
+	// same for seven distinct cards given as a SevenCardLookup key sum and mask (Stud Hi/Lo)
+	public static long hiLo(long key, long mask) {
+		int s0 = Card.suitMask(mask, 0);
+		int s1 = Card.suitMask(mask, 1);
+		int s2 = Card.suitMask(mask, 2);
+		int s3 = Card.suitMask(mask, 3);
+		return ((long) SevenCardLookup.score(key, s0, s1, s2, s3) << 32) | EIGHT_OR_BETTER_BY_RANKS[s0 | s1 | s2 | s3];
+	}
+
+	// the high score of a hiLo() result
+	public static int high(long hiLo) {
+		return (int) (hiLo >>> 32);
+	}
+
+	// the low of a hiLo() result
+	public static int low(long hiLo) {
+		return (int) hiLo;
+	}
+
+	// the cards of an ace-to-five low from high to low, e.g. "8-6-4-2-A", or "no low"
+	public static String aceToFiveToString(int low) {
+		if (low == NO_LOW) return "no low";
+		int ranks = 0x2000 - low;
+		StringBuilder sb = new StringBuilder();
+		for (int r = 12; r >= 0; r--) {
+			if ((ranks & (1 << r)) == 0) continue;
+			if (sb.length() > 0) sb.append('-');
+			sb.append(LOW_RANK_NAMES[r]);
+		}
+		return sb.toString();
+	}
+
+	// rank mask of a set of cards with aces moved from the top bit to the bottom
+	static int aceLowRanks(long mask) {
+		int ranks = Card.suitMask(mask, 0) | Card.suitMask(mask, 1) | Card.suitMask(mask, 2) | Card.suitMask(mask, 3);
+		return ((ranks << 1) | (ranks >>> 12)) & 0x1FFF;
+	}
+
+	// mask of the count lowest set bits of a mask
+	private static int lowestRanks(int mask, int count) {
+		int low = 0;
+		for (int i = 0; i < count; i++) {
+			int bit = mask & -mask;
+			low |= bit;
+			mask ^= bit;
+		}
+		return low;
+	}
+}
@@ -0,0 +1,78 @@
+package poker;
+
+import poker.PokerHandEvaluator.Category;
+
+/***
+ * evaluation of hands dealt from a shoe of several decks
+ *
+ * cards may repeat, so besides the usual categories a hand can make five
+ * of a kind (five cards of a rank) and a flush five (five identical cards),
+ * which rank above a royal flush, flush five highest. hands without five
+ * of a rank or five identical cards score the same as the reference logic,
+ * which already counts repeated cards (a flush plays repeats, a pair of
+ * identical cards is a pair).
+ *
+ * five card hands are looked up by their rank-count signature, the
+ * multiset index of their ranks (see FiveCardLookup.multisetIndex()), in
+ * one table for mixed suits and one for a single suit, so a shoe hand costs
+ * about the same as a single deck one. other sizes are counted into the
+ * calling thread's ScratchEvaluator. the tables are generated from that
+ * counting path when the class is loaded
+ */
+public final class MultiDeckEvaluator implements EvaluationEngine {
+
+	public static final MultiDeckEvaluator INSTANCE = new MultiDeckEvaluator();
+
+	static final int FIVE_OF_A_KIND = Category.FIVE_OF_A_KIND.ordinal() << 20;
+	static final int FLUSH_FIVE = Category.FLUSH_FIVE.ordinal() << 20;
+
+	// score of five cards by multiset index of their ranks, of mixed suits / of one suit
+	private static final int[] MIXED = new int[FiveCardLookup.NUM_RANK_MULTISETS];
+	private static final int[] SUITED = new int[FiveCardLookup.NUM_RANK_MULTISETS];
+
+	static {
+		fillTables(new ScratchEvaluator(), new int[5], 0, 0);
+	}
+
+	private MultiDeckEvaluator() {
+	}
+
+	public int score(int[] cards) {
+		if (cards.length == 5) return score(cards[0], cards[1], cards[2], cards[3], cards[4]);
+		return ScratchEvaluator.forCurrentThread().scoreCounted(cards, 0, cards.length, true);
+	}
+
+	// scores five cards, repeats allowed, with one table load
+	public static int score(int c0, int c1, int c2, int c3, int c4) {
+		int index = FiveCardLookup.multisetIndex(c0 >> 2, c1 >> 2, c2 >> 2, c3 >> 2, c4 >> 2);
+		boolean suited = (((c0 ^ c1) | (c0 ^ c2) | (c0 ^ c3) | (c0 ^ c4)) & 3) == 0;
+		return suited ? SUITED[index] : MIXED[index];
+	}
+
+	// scores the length cards starting at offset of an array, for hands packed back to back
+	public static int score(int[] cards, int offset, int length) {
+		if (length == 5) {
+			return score(cards[offset], cards[offset + 1], cards[offset + 2], cards[offset + 3], cards[offset + 4]);
+		}
+		return ScratchEvaluator.forCurrentThread().scoreCounted(cards, offset, length, true);
+	}
+
+	// every non-decreasing sequence of five ranks, dealt once in mixed suits and once in hearts
+	private static void fillTables(ScratchEvaluator counter, int[] cards, int depth, int minRank) {
+		if (depth == 5) {
+			int index = FiveCardLookup.multisetIndex(cards[0] >> 2, cards[1] >> 2, cards[2] >> 2,
+					cards[3] >> 2, cards[4] >> 2);
+			// suits 0, 1, 2, 3, 0 never make a flush
+			for (int i = 0; i < 5; i++) cards[i] = Card.of((cards[i] >> 2) + 2, i & 3);
+			MIXED[index] = counter.scoreCounted(cards, 0, 5, true);
+			for (int i = 0; i < 5; i++) cards[i] = Card.of((cards[i] >> 2) + 2, Card.HEARTS);
+			SUITED[index] = counter.scoreCounted(cards, 0, 5, true);
+			return;
+		}
+
+		for (int r = minRank; r < 13; r++) {
+			cards[depth] = Card.of(r + 2, Card.HEARTS);
+			fillTables(counter, cards, depth + 1, r);
+		}
+	}
+}
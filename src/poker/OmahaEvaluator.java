@@ -0,0 +1,170 @@
+package poker;
+
+/***
+ * Omaha high evaluation: the best hand using exactly two hole cards and
+ * exactly three board cards
+ *
+ * works for four hole cards (Omaha / PLO, 6 x 10 = 60 combinations) and
+ * five (Big O / PLO5, 10 x 10 = 100), on a board of three to five cards.
+ * instead of scoring every combination from scratch:
+ * - the rank mask, sorted ranks and suit of each board triple and of each
+ *   hole pair are worked out once and combined for every combination
+ * - a combination with five distinct ranks is a single FiveCardLookup load
+ *   on the or-ed rank masks; a paired one merges the two sorted rank lists
+ *   and loads by multiset index
+ * - flushes are only considered in a suit with at least three board cards
+ *   and two hole cards, otherwise the suit checks are skipped altogether
+ * scores are the same as evalHand() on the best legal five cards.
+ * scoreHiLo() also finds the eight-or-better ace-to-five low (see
+ * LowballEvaluator) in the same loop, under the same two-plus-three rule
+ */
+public final class OmahaEvaluator {
+
+	private OmahaEvaluator() {
+	}
+
+	// ace-low rank mask of cards that cannot be part of an eight-or-better low;
+	// or-ed into any other mask it never leaves five ranks
+	private static final int NO_LOW_RANKS = 0x1FFF;
+
+	// scores the best hand made of exactly two hole cards and three board cards
+	public static int score(int[] hole, int[] board) {
+		return LowballEvaluator.high(evaluate(hole, board, false));
+	}
+
+	// high score and eight-or-better low (see LowballEvaluator.hiLo()) for Omaha Hi/Lo,
+	// each made of exactly two hole cards and three board cards, not necessarily the same ones
+	public static long scoreHiLo(int[] hole, int[] board) {
+		return evaluate(hole, board, true);
+	}
+
+	// evaluates the best legal hand into a result
+	public static void evaluate(int[] hole, int[] board, HandResult result) {
+		result.set(score(hole, board));
+	}
+
+	private static long evaluate(int[] hole, int[] board, boolean withLow) {
+		if (hole.length < 2)
+			throw new IllegalArgumentException("at least two hole cards are needed, got " + hole.length);
+		if (board.length < 3 || board.length > 5)
+			throw new IllegalArgumentException("a board has three to five cards, got " + board.length);
+
+		long holeMask = Card.mask(hole);
+		long boardMask = Card.mask(board);
+		if (Long.bitCount(holeMask) != hole.length || Long.bitCount(boardMask) != board.length
+				|| (holeMask & boardMask) != 0)
+			throw new IllegalArgumentException("a card is dealt twice");
+
+		// suits that can make a flush
+		int flushSuits = 0;
+		for (int suit = 0; suit < 4; suit++) {
+			if (Long.bitCount(Card.suitMask(boardMask, suit)) >= 3 && Long.bitCount(Card.suitMask(holeMask, suit)) >= 2)
+				flushSuits |= 1 << suit;
+		}
+
+		int numTriples = board.length * (board.length - 1) * (board.length - 2) / 6;
+		int[] tripleMasks = new int[numTriples];
+		int[] tripleRanks = new int[numTriples];
+		int[] tripleSuits = new int[numTriples];
+		int[] tripleLows = new int[numTriples];
+		int t = 0;
+		for (int i = 0; i < board.length; i++) {
+			for (int j = i + 1; j < board.length; j++) {
+				for (int k = j + 1; k < board.length; k++) {
+					tripleMasks[t] = rankBit(board[i]) | rankBit(board[j]) | rankBit(board[k]);
+					tripleRanks[t] = sortedRanks(board[i] >> 2, board[j] >> 2, board[k] >> 2);
+					tripleSuits[t] = flushSuit(flushSuits, board[i], board[j], board[k]);
+					tripleLows[t] = lowRanks(lowRank(board[i]) | lowRank(board[j]) | lowRank(board[k]), 3);
+					t++;
+				}
+			}
+		}
+
+		int best = 0;
+		int low = LowballEvaluator.NO_LOW;
+		for (int i = 0; i < hole.length; i++) {
+			for (int j = i + 1; j < hole.length; j++) {
+				int pairMask = rankBit(hole[i]) | rankBit(hole[j]);
+				int a = Math.min(hole[i] >> 2, hole[j] >> 2);
+				int b = Math.max(hole[i] >> 2, hole[j] >> 2);
+				// -2 never equals a triple's suit, so no flush
+				int pairSuit = flushSuit(flushSuits, hole[i], hole[j], hole[j]);
+				if (pairSuit < 0) pairSuit = -2;
+
+				for (t = 0; t < numTriples; t++) {
+					int rankMask = tripleMasks[t] | pairMask;
+					int cls;
+					if (Integer.bitCount(rankMask) == 5) {
+						cls = FiveCardLookup.distinctClass(rankMask, tripleSuits[t] == pairSuit);
+					} else {
+						cls = FiveCardLookup.pairedClass(mergedIndex(tripleRanks[t], a, b));
+					}
+					if (cls > best) best = cls;
+				}
+
+				if (!withLow) continue;
+				int pairLow = lowRanks(lowRank(hole[i]) | lowRank(hole[j]), 2);
+				if (pairLow == NO_LOW_RANKS) continue;
+				for (t = 0; t < numTriples; t++) {
+					int lowRanks = tripleLows[t] | pairLow;
+					if (Integer.bitCount(lowRanks) == 5)
+						low = Math.max(low, LowballEvaluator.aceToFiveOfRanks(lowRanks));
+				}
+			}
+		}
+		return ((long) FiveCardLookup.classScore(best) << 32) | low;
+	}
+
+	private static int rankBit(int card) {
+		return 1 << (card >> 2);
+	}
+
+	// the suit of three cards if they share one that can make a flush, otherwise -1
+	private static int flushSuit(int flushSuits, int c0, int c1, int c2) {
+		int suit = c0 & 3;
+		if ((c1 & 3) != suit || (c2 & 3) != suit || (flushSuits & (1 << suit)) == 0) return -1;
+		return suit;
+	}
+
+	// the ace-low rank mask of numCards cards if their ranks are distinct and
+	// from ace to eight, otherwise NO_LOW_RANKS
+	private static int lowRanks(int ranks, int numCards) {
+		if (ranks >= 1 << 8 || Integer.bitCount(ranks) != numCards) return NO_LOW_RANKS;
+		return ranks;
+	}
+
+	// ace-low rank bit of a card (bit 0 = ace)
+	private static int lowRank(int card) {
+		return 1 << ((card >> 2) == 12 ? 0 : (card >> 2) + 1);
+	}
+
+	// three ranks packed in ascending order, a nibble each from the lowest
+	private static int sortedRanks(int r0, int r1, int r2) {
+		int t;
+		if (r0 > r1) { t = r0; r0 = r1; r1 = t; }
+		if (r1 > r2) { t = r1; r1 = r2; r2 = t; }
+		if (r0 > r1) { t = r0; r0 = r1; r1 = t; }
+		return r0 | (r1 << 4) | (r2 << 8);
+	}
+
+	// multiset index of three packed sorted ranks merged with a <= b
+	private static int mergedIndex(int ranks, int a, int b) {
+		int holeRanks = a | (b << 4);
+		int merged = 0;
+		int i = 0;
+		int j = 0;
+		for (int n = 0; n < 5; n++) {
+			int x = i < 3 ? (ranks >> (4 * i)) & 0xF : 16;
+			int y = j < 2 ? (holeRanks >> (4 * j)) & 0xF : 16;
+			if (x <= y) {
+				merged |= x << (4 * n);
+				i++;
+			} else {
+				merged |= y << (4 * n);
+				j++;
+			}
+		}
+		return FiveCardLookup.sortedMultisetIndex(merged & 0xF, (merged >> 4) & 0xF, (merged >> 8) & 0xF,
+				(merged >> 12) & 0xF, merged >> 16);
+	}
+}
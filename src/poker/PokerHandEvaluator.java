@@ -1,8 +1,8 @@
 package poker;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.Arrays;
+import java.util.List;
 import org.json.JSONArray;
 
 /***
@@ -11,53 +11,136 @@ import org.json.JSONArray;
  * @author Trevor Truog
  */
 public class PokerHandEvaluator {
-	
+
 	// enumeration for all possible card categories
-	public static enum Category { 
+	// FIVE_OF_A_KIND and FLUSH_FIVE (five identical cards) only exist with more than one
+	// deck and are only made by MultiDeckEvaluator; they come last so the other ordinals,
+	// and therefore scores, stay the same
+	public static enum Category {
 		HIGH_CARD, ONE_PAIR, TWO_PAIR, THREE_OF_A_KIND, STRAIGHT, FLUSH,
-		FULL_HOUSE, FOUR_OF_A_KIND, STRAIGHT_FLUSH, ROYAL_FLUSH;
+		FULL_HOUSE, FOUR_OF_A_KIND, STRAIGHT_FLUSH, ROYAL_FLUSH,
+		FIVE_OF_A_KIND, FLUSH_FIVE;
 	}
-	
+
 	// takes a JSONArray of n poker cards, gets the final category and tie breaking info and prints it
 	// used for answering questions 1 and 3
 	public static void printEvaluationInfo(JSONArray hand) {
-		
-		EvaluationInfo info = evalHand(hand);
-		
+		printEvaluationInfo(hand, evalHand(hand));
+	}
+
+	// prints a hand with an evaluation that was already computed for it
+	private static void printEvaluationInfo(JSONArray hand, EvaluationInfo info) {
+
 		System.out.print("Input Hand: ");
 		printHand(hand);
-		
+
 		System.out.println("Category: " + info.getCategory());
 		System.out.print("Cards Used: ");
-		
-		for(Object card: info.getCardsUsed()) {
-			printCardHelper((int) card);
+
+		for(int card: info.getCardsUsed()) {
+			printCardHelper(card);
 		}
 		System.out.println();
-		
+
 		System.out.print("Kickers: ");
-		
-		for(Object card: info.getKickers()) {
-			printCardHelper((int) card);
+
+		for(int card: info.getKickers()) {
+			printCardHelper(card);
 
 		}
-		System.out.println("\n");	
+		System.out.println("\n");
 	}
 
-	// determines the final evaluation for a hand using the below helper methods
-	// and returns the hand info
+	// parses a JSONArray of cards and evaluates it
+	// the JSON array is left untouched
 	public static EvaluationInfo evalHand(JSONArray hand) {
-		
+		return evalHand(Card.parse(hand));
+	}
+
+	// evaluates a set of distinct cards packed into a 52-bit mask (see Card)
+	// a mask is always scored with the bitboard engine, which works on masks directly
+	public static EvaluationInfo evalHand(long mask) {
+		return new EvaluationInfo(BitboardEvaluator.score(mask));
+	}
+
+	// evaluates a hand of encoded cards (see Card) with the current engine
+	// the cards array is left untouched
+	public static EvaluationInfo evalHand(int[] cards) {
+		EvaluationEngine current = engine;
+		if (current == REFERENCE) return evalReference(cards);
+		return new EvaluationInfo(current.score(cards));
+	}
+
+	// evaluates an Omaha hand: the best hand using exactly two hole cards and three
+	// board cards (four or five hole cards, three to five board cards)
+	public static EvaluationInfo evalOmahaHand(JSONArray hole, JSONArray board) {
+		return new EvaluationInfo(OmahaEvaluator.score(Card.parse(hole), Card.parse(board)));
+	}
+
+	// evaluates a hand where jokers ("JK") and cards of wildRank (2 to 14, or 0 for none) are wild
+	public static EvaluationInfo evalWildHand(JSONArray hand, int wildRank) {
+		return new EvaluationInfo(WildCardEvaluator.score(hand, wildRank));
+	}
+
+	// prints a wild card hand like printEvaluationInfo, plus the cards the wilds stand for
+	public static void printWildEvaluationInfo(JSONArray hand, int wildRank) {
+		long naturals = WildCardEvaluator.naturals(hand, wildRank);
+		int wilds = WildCardEvaluator.wilds(hand, wildRank);
+
+		System.out.print("Wilds As: ");
+		for (int card : WildCardEvaluator.substitutes(naturals, wilds))
+			System.out.print(Card.toString(card) + " ");
+		System.out.println();
+
+		printEvaluationInfo(hand, new EvaluationInfo(WildCardEvaluator.score(naturals, wilds)));
+	}
+
+	// scores a hand of encoded cards with the current engine (see EvaluationInfo.getScore())
+	public static int score(int[] cards) {
+		return engine.score(cards);
+	}
+
+	// scores a set of distinct cards packed into a mask (see Card)
+	public static int score(long mask) {
+		return BitboardEvaluator.score(mask);
+	}
+
+	// the engine built from the helper methods below, which every other engine must agree with
+	public static final EvaluationEngine REFERENCE = new EvaluationEngine() {
+		public int score(int[] cards) {
+			return evalReference(cards).getScore();
+		}
+	};
+
+	private static volatile EvaluationEngine engine = REFERENCE;
+
+	// selects the engine used by evalHand(int[]) and score(), for example a lookup table engine
+	public static void setEngine(EvaluationEngine newEngine) {
+		engine = newEngine;
+	}
+
+	public static EvaluationEngine getEngine() {
+		return engine;
+	}
+
+	// determines the final evaluation for a hand of encoded cards (see Card)
+	// using the below helper methods and returns the hand info
+	private static EvaluationInfo evalReference(int[] cards) {
+
+		// work on a sorted copy so callers can share their arrays
+		int[] hand = cards.clone();
+		sortByValue(hand);
+
 		// get the info from the three helper methods
 		EvaluationInfo straight = evalStraight(hand);
 		EvaluationInfo flush = evalFlush(hand);
 		EvaluationInfo other = evalOther(hand);
-		
+
 		// instantiate final info-holding variables
 		Category cat = Category.HIGH_CARD;
-		JSONArray cardsUsed = new JSONArray();
-		JSONArray kickers = new JSONArray();
-		
+		int[] cardsUsed = NO_CARDS;
+		int[] kickers = NO_CARDS;
+
 		// check each category from best to worst to determine the highest category
 		// set the info based on the first accepted category
 		if (flush.getCategory() == Category.ROYAL_FLUSH || flush.getCategory() == Category.STRAIGHT_FLUSH) {
@@ -80,16 +163,19 @@ public class PokerHandEvaluator {
 			cardsUsed = other.getCardsUsed();
 			kickers = other.getKickers();
 		}
-			
+
 		return new EvaluationInfo(cat, cardsUsed, kickers);
 	}
-	
-	// evaluates a hand to determine whether or not it contains a straight
-	private static EvaluationInfo evalStraight(JSONArray hand) {
-		
-		//ensure that the hand is sorted
-		sortByValue(hand);
-			
+
+	// shared empty array for categories without used cards or kickers
+	private static final int[] NO_CARDS = new int[0];
+
+	// evaluates a sorted hand to determine whether or not it contains a straight
+	private static EvaluationInfo evalStraight(int[] hand) {
+
+		if (hand.length == 0)
+			return new EvaluationInfo();
+
 		// Iterate through the array backwards of card ranks
 		// keep track of number of consecutive adjacent ranks
 		// (increase by 1 or stay the same if there are two cards of the same rank)
@@ -97,14 +183,14 @@ public class PokerHandEvaluator {
 		boolean straight = false;
 		int lowNumber = 0;
 		int numInARow = 1;
-		int value = cardToNumber(hand.getString(hand.length() - 1 ));
-		
-		for (int i = hand.length() - 2; i >= 0; i--) {
-			
-			int nextValue = cardToNumber(hand.getString(i));
-			
+		int value = Card.rank(hand[hand.length - 1]);
+
+		for (int i = hand.length - 2; i >= 0; i--) {
+
+			int nextValue = Card.rank(hand[i]);
+
 			// if the difference is 1, increase numInARow by 1, if it is 0, keep it the same, otherwise, reset
-			if (value - nextValue == 1) { 
+			if (value - nextValue == 1) {
 				numInARow += 1;
 				if (numInARow == 5) {
 					straight = true;
@@ -114,164 +200,152 @@ public class PokerHandEvaluator {
 			} else if (value - nextValue != 0) {
 				numInARow = 1;
 			}
-			
+
 			value = nextValue;
 		}
-		
-		Category cat = straight ? Category.STRAIGHT : Category.HIGH_CARD;
-		
+
+		// the ace also plays low, so check for the A-2-3-4-5 wheel
+		// (its cards are listed with the ace first)
+		if (!straight) {
+			int wheel = 0;
+			for (int card : hand) {
+				int rank = Card.rank(card);
+				if (rank <= 5 || rank == 14) wheel |= 1 << (rank == 14 ? 1 : rank);
+			}
+			if (wheel != 0x3E)
+				return new EvaluationInfo();
+
+			return new EvaluationInfo(Category.STRAIGHT, new int[] {14, 2, 3, 4, 5}, NO_CARDS);
+		}
+
 		// only return number value to maintain consistency
-		JSONArray cardsUsed = new JSONArray();
-		
+		int[] cardsUsed = new int[5];
+
 		for(int i = 0; i < 5; i++) {
-			cardsUsed.put(lowNumber);
+			cardsUsed[i] = lowNumber;
 			lowNumber++;
 		}
-		
-		JSONArray cardsUsedFinal = straight ? cardsUsed : new JSONArray();
-		
-		
-		return new EvaluationInfo(cat, cardsUsedFinal, new JSONArray());
-		
+
+		return new EvaluationInfo(Category.STRAIGHT, cardsUsed, NO_CARDS);
+
 	}
-	
-	// evaluates a hand to determine whether or not it contains a
+
+	// evaluates a sorted hand to determine whether or not it contains a
 	// royal flush, straight flush, or regular flush
-	private static EvaluationInfo evalFlush(JSONArray hand) {
-		
-		
+	private static EvaluationInfo evalFlush(int[] hand) {
+
+
 		// check for flush with a five card hand (skips extra work required for longer hands)
-		if (hand.length() == 5) 
+		if (hand.length == 5)
 			return evalFlushFiveCard(hand);
 
-		ArrayList<JSONArray> flushes = getFlushes(hand);
-		
+		ArrayList<int[]> flushes = getFlushes(hand);
+
 		//if there are no flushes, return high card as category
-		if (flushes.size() == 0) 
-			return new EvaluationInfo(Category.HIGH_CARD, new JSONArray(), new JSONArray());
-		
-		
+		if (flushes.size() == 0)
+			return new EvaluationInfo();
+
+
 		EvaluationInfo isStraightFlush = evalStraightandRoyalFlush(flushes);
 
 		Category cat = isStraightFlush.getCategory();
-		if (cat != Category.HIGH_CARD) 
+		if (cat != Category.HIGH_CARD)
 			return isStraightFlush;
 
 		// if we don't have a straight or royal flush,
 		// find the highest ranking flush
-		
+
 		// first, trim all flushes to size 5
-		// Remove the smallest card in each flush until it is of size 5
-		for(JSONArray f : flushes) {
-			while (f.length() > 5 ) {
-				f.remove(0);
-			}
+		// keep the five largest cards in each flush
+		for(int i = 0; i < flushes.size(); i++) {
+			int[] f = flushes.get(i);
+			flushes.set(i, Arrays.copyOfRange(f, f.length - 5, f.length));
 		}
-		
+
 		// get default best flush
-		JSONArray bestFlush = flushes.get(0);
-		
+		int[] bestFlush = flushes.get(0);
+
 		// if there are more than one flush, get the best flush
 		if (flushes.size() > 1) {
 			bestFlush = getBestFlush(flushes);
 		}
 
 		// only return number value to maintain consistency
-		JSONArray cardsUsed = new JSONArray();
+		return new EvaluationInfo(Category.FLUSH, ranks(bestFlush), NO_CARDS);
 
-		for(Object card : bestFlush)
-			cardsUsed.put(cardToNumber((String) card));
+	}
 
-		return new EvaluationInfo(Category.FLUSH, cardsUsed, new JSONArray());
+	// evalFlush() helper method: evaluate a sorted five card hand for a flush
+	private static EvaluationInfo evalFlushFiveCard(int[] hand){
 
-	}
-	
-	// evalFlush() helper method: evaluate a five card hand for a flush
-	private static EvaluationInfo evalFlushFiveCard(JSONArray hand){
-		sortByValue(hand);
-		
-		Character suite = cardToNumber(hand.getString(0)) == 10 ?
-				hand.getString(0).charAt(2) : hand.getString(0).charAt(1);
-		
-		for (int i = 1; i < hand.length(); i++) {
-			
-			Character nextSuite = cardToNumber(hand.getString(i)) == 10 ?
-					hand.getString(i).charAt(2) : hand.getString(i).charAt(1);
-					
-			if (suite.compareTo(nextSuite) != 0) {
-				return new EvaluationInfo(Category.HIGH_CARD, new JSONArray(), new JSONArray());
+		int suite = Card.suit(hand[0]);
+
+		for (int i = 1; i < hand.length; i++) {
+			if (Card.suit(hand[i]) != suite) {
+				return new EvaluationInfo();
 			}
 		}
-		
+
 		EvaluationInfo helperInfo = evalStraight(hand);
-		
+
 		boolean isStraight = helperInfo.getCategory() == Category.STRAIGHT ? true : false;
-		
+
 		Category cat = Category.FLUSH;
-		
+
 		if (isStraight) cat = Category.STRAIGHT_FLUSH;
-		
-		if (isStraight && cardToNumber(hand.getString(4)) == 14) cat = Category.ROYAL_FLUSH;
-		
-		JSONArray cardsUsed = new JSONArray();
-		for(Object card : hand)
-			cardsUsed.put(cardToNumber((String) card));
 
-		return new EvaluationInfo(cat, cardsUsed, new JSONArray());
-		
-	}
-	
-	// evalFlush() helper method: return a list of all possible flushes in the hand
-	private static ArrayList<JSONArray> getFlushes(JSONArray hand) {
-			// Count the number of time each suite appears in a hand
-			ArrayList<JSONArray> counts = new ArrayList<JSONArray>(4);
+		if (isStraight && helperInfo.getCardsUsed()[4] == 14) cat = Category.ROYAL_FLUSH;
 
-			for (int i = 0; i < 4; i++) counts.add(new JSONArray());
+		// a straight's cards are listed in straight order (the wheel starts at the ace)
+		if (isStraight) return new EvaluationInfo(cat, helperInfo.getCardsUsed(), NO_CARDS);
 
-			for(Object card : hand) {
+		return new EvaluationInfo(cat, ranks(hand), NO_CARDS);
 
+	}
 
-				char suite  = ((String) card).charAt(1);
-				if (((String)card).length() == 3) suite  = ((String) card).charAt(2);
+	// evalFlush() helper method: return a list of all possible flushes in a sorted hand
+	private static ArrayList<int[]> getFlushes(int[] hand) {
+			// Bucket the cards of the hand by suite
+			int[][] bySuite = new int[4][hand.length];
+			int[] counts = new int[4];
 
-				if (suite == 'H') counts.get(0).put(card);
-				else if (suite == 'C') counts.get(1).put(card);
-				else if (suite == 'D') counts.get(2).put(card);
-				else counts.get(3).put(card);
+			for(int card : hand) {
+				int suite = Card.suit(card);
+				bySuite[suite][counts[suite]++] = card;
 			}
 
 
-			//Get each flush (group of 5 or more cards of the same suite) in this hand 
-			ArrayList<JSONArray> flushes = new ArrayList<JSONArray>();
-			for (JSONArray cardsBySuite : counts) {
-				if (cardsBySuite.length() >= 5) {
-					sortByValue(cardsBySuite);
-					flushes.add(cardsBySuite);
+			//Get each flush (group of 5 or more cards of the same suite) in this hand
+			// buckets stay sorted because the hand is sorted
+			ArrayList<int[]> flushes = new ArrayList<int[]>();
+			for (int suite = 0; suite < 4; suite++) {
+				if (counts[suite] >= 5) {
+					flushes.add(Arrays.copyOf(bySuite[suite], counts[suite]));
 				}
 			}
 			return flushes;
 		}
-	
+
 	// evalFlush() helper method: check for straight and royal flush
-	private static EvaluationInfo evalStraightandRoyalFlush(ArrayList<JSONArray> flushes) {
+	private static EvaluationInfo evalStraightandRoyalFlush(ArrayList<int[]> flushes) {
 
 		// Determine whether any of these flushes are a straight flush or royal flush
 		// picks the best possible straight or royal flush out of all flushes
 		Category cat = Category.HIGH_CARD;
-		JSONArray cardsUsed = new JSONArray();
+		int[] cardsUsed = NO_CARDS;
 
 		int curHighCard = 0;
 
 		for (int i = 0; i < flushes.size();i++) {
-			JSONArray flush = flushes.get(i);
+			int[] flush = flushes.get(i);
 
 			EvaluationInfo info = evalStraight(flush);
 
 			if (info.getCategory() == Category.STRAIGHT) {
 
 				// only need to look at high card when comparing straights
-				if (info.getCardsUsed().getInt(4) > curHighCard) {
-					curHighCard = info.getCardsUsed().getInt(4);
+				if (info.getCardsUsed()[4] > curHighCard) {
+					curHighCard = info.getCardsUsed()[4];
 					cardsUsed = info.getCardsUsed();
 					cat = Category.STRAIGHT_FLUSH;
 
@@ -285,257 +359,217 @@ public class PokerHandEvaluator {
 
 		}
 
-		return new EvaluationInfo(cat, cardsUsed, new JSONArray());
+		return new EvaluationInfo(cat, cardsUsed, NO_CARDS);
 	}
-	
-	// evalFlush() helper method: get highest ranking standard flush out of all standard flushes
-	private static JSONArray getBestFlush (ArrayList<JSONArray> flushes) {
-
-		// look at the highest card in each flush and compare it
-		// with the other highest cards. Remove all flushes
-		// with a lower highest card. Iterate to determine ties
-		for (int i = 4; i >= 0; i--) {
-
-			ArrayList<Integer> cardAtIndex = new ArrayList<Integer>();
-
-			// get the number of highest card in each flush (then second highest... down to least highest in the case of ties)
-			for (JSONArray f : flushes) {
-				cardAtIndex.add(cardToNumber(f.getString(i)));
-			}
 
-			// find the highest card of each flush at this index
-			int maxAtIndex = 0;
-			for(int e = 0; e < cardAtIndex.size(); e++) {
-
-				int cur = cardAtIndex.get(e);
-				if ( cur > maxAtIndex) {
-					maxAtIndex = cur;
-				}	
-			}
+	// evalFlush() helper method: get highest ranking standard flush out of all standard flushes
+	private static int[] getBestFlush (ArrayList<int[]> flushes) {
 
+		// compare the highest card of each flush, then the second highest
+		// and so on down to the fifth; the first flush wins an exact tie
+		int[] best = flushes.get(0);
 
-			// remove all flushes from group of potential flushes that do not have the highest card
-			ArrayList<Integer> toRemove = new ArrayList<Integer>();
-			for(int e = 0; e < flushes.size(); e++) {
-				JSONArray cur = flushes.get(e);
-				int valAtIndex = cardToNumber(cur.getString(i));
-				if (valAtIndex < maxAtIndex) toRemove.add(e);
-			}
+		for (int f = 1; f < flushes.size(); f++) {
+			int[] cur = flushes.get(f);
 
-			// remove all flushes that 'lost' at this iteration
-			// go backwards to ensure indexes don't change
-			for(int e = toRemove.size()-1; e >= 0; e--) {
-				int removeIndex = toRemove.get(e);
-				//System.out.println(toRemove.get(e));
-				flushes.remove(removeIndex);
+			for (int i = 4; i >= 0; i--) {
+				int diff = Card.rank(cur[i]) - Card.rank(best[i]);
+				if (diff > 0) best = cur;
+				if (diff != 0) break;
 			}
-
 		}
 
-		return flushes.get(0);
+		return best;
 	}
-	
-	// determines the highest rank for the hand that is not a straight or a type of flush
-	private static EvaluationInfo evalOther(JSONArray hand) {
-		
-		// create a 'bucket' for each possible rank in order to track how many 
+
+	// determines the highest rank for the sorted hand that is not a straight or a type of flush
+	private static EvaluationInfo evalOther(int[] hand) {
+
+		// create a 'bucket' for each possible rank in order to track how many
 		// cards of each rank appear in the hand
 		//using indices 2 through 14
 		int[] cardCounts = new int[15];
-		
+
 		// populate buckets
-		for (Object card : hand) cardCounts[cardToNumber((String) card)]++;
-		
+		for (int card : hand) cardCounts[Card.rank(card)]++;
+
 		// track categories that this hand contains
 		boolean onePair = false;
 		boolean twoPair = false;
 		boolean threeOfAKind = false;
 		boolean fullHouse = false;
 		boolean fourOfAKind = false;
-		
+
 		// track (highest) rank of card that fulfills this category
 		int pairRank = 0;
 		int twoPairRank = 0;
 		int threeRank = 0;
 		int fourRank = 0;
-		
+
 		// determine which categories this hand satisfies
-		for(int i = 2; i < cardCounts.length-1; i++) {
-			
+		for(int i = 2; i < cardCounts.length; i++) {
+
 			if (onePair && cardCounts[i] >= 2) {
 				twoPair = true;
 			}
-			
+
 			if (cardCounts[i] >= 2) {
 
 				if (pairRank <= twoPairRank) pairRank = i;
 				else twoPairRank = i;
-			
+
 				onePair = true;
-			
-			}	
-					
+
+			}
+
 			if (cardCounts[i] >= 3) {
 				threeRank = i;
-				threeOfAKind = true;	
+				threeOfAKind = true;
 			}
-			
+
 			if (cardCounts[i] >= 4) {
 				fourRank = i;
 				fourOfAKind = true;
-			} 
-				
+			}
+
 		}
-		
+
 		if (threeOfAKind && twoPair) fullHouse = true;
-		
+
 		// instantiate return information
 		Category cat = Category.HIGH_CARD;
-		JSONArray usedCards = new JSONArray();
-		JSONArray kickers = new JSONArray();
-		
-		sortByValue(hand);
-		
-		// put all the cards in the hand in the list of kickers
-		// used cards will be removed
-		for (int i = 0; i < hand.length();i++) {
-			kickers.put(cardToNumber(hand.getString(i)));
-		}
-		
-		
+		int[] usedCards = NO_CARDS;
+
+		// all the cards in the hand are kickers until used cards are removed
+		int[] kickers = ranks(hand);
+
+
 		// find the highest possible category this hand satisfies using the above information
 		// Once that category is found, populate the usedCards and kickers lists
 		if(fourOfAKind) {
-			
+
 			cat = Category.FOUR_OF_A_KIND;
-			
-			for(int i = 0; i < 4; i++) usedCards.put(fourRank);
-			
-			for (int i = kickers.length() - 1; i >= 0;i--) {
-				if (kickers.getInt(i) == fourRank) {
-					kickers.remove(i);
-				}
-			}
-	
+
+			usedCards = new int[] {fourRank, fourRank, fourRank, fourRank};
+			kickers = removeRanks(kickers, fourRank, fourRank, 1);
+
 		} else if (fullHouse) {
-			
+
 			cat = Category.FULL_HOUSE;
-			
-			
-			
+
+
+
 			// threeRank and the maximum of the pair ranks could be the same
 			// if they are, use the minimum of the pair ranks instead
 			int twos = Math.max(pairRank, twoPairRank);
 			if (twos == threeRank) twos =  Math.min(pairRank, twoPairRank);
-			
+
 			// make sure cards are inserted in ascending order
 			if (twos < threeRank) {
-				for(int i = 0; i < 2; i++) usedCards.put(twos);
-				for(int i = 0; i < 3; i++) usedCards.put(threeRank);
+				usedCards = new int[] {twos, twos, threeRank, threeRank, threeRank};
 			} else {
-				for(int i = 0; i < 3; i++) usedCards.put(threeRank);
-				for(int i = 0; i < 2; i++) usedCards.put(twos);
+				usedCards = new int[] {threeRank, threeRank, threeRank, twos, twos};
 			}
-				
-			// no kickers for a full house, so clear array
-			kickers = new JSONArray();
-		
+
+			// no kickers for a full house
+			kickers = NO_CARDS;
+
 		} else if (threeOfAKind) {
-			
+
 			cat = Category.THREE_OF_A_KIND;
-			
-			for(int i = 0; i < 3; i++) usedCards.put(threeRank);
-			int numRemaining = 3;
-			
-			for (int i = kickers.length() - 1; i >= 0;i--) {
-				if (kickers.getInt(i) == threeRank) {
-					kickers.remove(i);
-				numRemaining--;
-				if(numRemaining == 0) break;
-				}
-			}
+
+			usedCards = new int[] {threeRank, threeRank, threeRank};
+			kickers = removeRanks(kickers, threeRank, threeRank, 2);
 
 		} else if (twoPair) {
-			
+
 			cat = Category.TWO_PAIR;
 
-			for(int i = 0; i < 2; i++) usedCards.put((Integer)Math.min(pairRank, twoPairRank));
-			for(int i = 0; i < 2; i++) usedCards.put((Integer)Math.max(pairRank, twoPairRank));
-			
-			int numRemainingPair1 = 2;
-			int numRemainingPair2 = 2;
-			
-			for (int i = kickers.length() - 1; i >= 0;i--) {
-				if (kickers.getInt(i) == pairRank) {
-					kickers.remove(i);
-					numRemainingPair2--;
-				} else if (kickers.getInt(i) == twoPairRank) {
-					kickers.remove(i);
-					numRemainingPair2--;
-				}
-				if(numRemainingPair1 == 0 && numRemainingPair2 == 0) break;
-			}
+			int low = Math.min(pairRank, twoPairRank);
+			int high = Math.max(pairRank, twoPairRank);
+
+			usedCards = new int[] {low, low, high, high};
+			kickers = removeRanks(kickers, pairRank, twoPairRank, 1);
 
 		} else if (onePair) {
-			
+
 			cat = Category.ONE_PAIR;
-			
-			for(int i = 0; i < 2; i++) usedCards.put(Math.max(pairRank, twoPairRank));
-			int numRemaining = 2;
-			
-			for (int i = kickers.length() - 1; i >= 0;i--) {
-				if (kickers.getInt(i) == Math.max(pairRank, twoPairRank)) {
-					kickers.remove(i);
-				numRemaining--;
-				if(numRemaining == 0) break;
-				}
-			}
+
+			int pair = Math.max(pairRank, twoPairRank);
+
+			usedCards = new int[] {pair, pair};
+			kickers = removeRanks(kickers, pair, pair, 3);
+
+		} else {
+
+			// only the five highest cards play
+			kickers = removeRanks(kickers, 0, 0, 5);
 		}
 
 		return new EvaluationInfo(cat, usedCards, kickers);
 	}
-	
-	//prints each card in a hand
+
+	// returns the ranks of encoded cards, keeping their order
+	private static int[] ranks(int[] cards) {
+		int[] ranks = new int[cards.length];
+		for (int i = 0; i < cards.length; i++) ranks[i] = Card.rank(cards[i]);
+		return ranks;
+	}
+
+	// returns the (at most) keep highest ranks of an ascending list of ranks
+	// that are not one of the two given ranks, still in ascending order
+	private static int[] removeRanks(int[] ranks, int rank, int otherRank, int keep) {
+		int n = 0;
+		for (int r : ranks) if (r != rank && r != otherRank) n++;
+
+		int[] remaining = new int[Math.min(n, keep)];
+		int skip = n - remaining.length;
+		n = 0;
+		for (int r : ranks) {
+			if (r == rank || r == otherRank) continue;
+			if (skip > 0) skip--;
+			else remaining[n++] = r;
+		}
+		return remaining;
+	}
+
+	//prints each card in a hand, sorted by value
 	private static void printHand(JSONArray hand) {
-		for(Object card : hand) {
+		String[] cards = new String[hand.length()];
+		for (int i = 0; i < cards.length; i++) cards[i] = hand.getString(i);
+
+		// insertion sort keeps cards of equal rank in input order
+		for (int i = 1; i < cards.length; i++) {
+			for (int j = i; j > 0 && Card.rank(Card.parse(cards[j-1])) > Card.rank(Card.parse(cards[j])); j--) {
+				String temp = cards[j];
+				cards[j] = cards[j-1];
+				cards[j-1] = temp;
+			}
+		}
+
+		for(String card : cards) {
 			System.out.print(card + " ");
 		}
 		System.out.println();
 	}
 
-	// Sort a hand of cards by card rank in ascending order
+	// Sort encoded cards in ascending order, which sorts them by rank
 	// I used insertion sort because it is simple and we will only be sorting small arrays
-	private static void sortByValue(JSONArray cards) {
-				
-		for (int i = 0; i < cards.length(); i++) {
+	private static void sortByValue(int[] cards) {
+
+		for (int i = 1; i < cards.length; i++) {
+			int card = cards[i];
 			int j = i;
-			
-			while ( j > 0 && cardToNumber(cards.getString(j-1)) > cardToNumber(cards.getString(j))) {
-				
-				String temp = cards.getString(j);
-				cards.put(j, cards.get(j-1));
-				cards.put(j-1, temp);
-				
+
+			while ( j > 0 && cards[j-1] > card) {
+				cards[j] = cards[j-1];
 				j -= 1;
 			}
+			cards[j] = card;
 		}
 	}
-	
-	//takes a card and returns a numerical rank for that card, for comparison purposes
-	private static int cardToNumber(String card) {
-		
-		Character value  = ((String) card).charAt(0);
-		
-		if (card.length() == 3) return 10;
-		else if (Character.isDigit(value)) return Character.getNumericValue(value);
-		else if (value == 'J') return 11;
-		else if (value == 'Q') return 12;
-		else if (value == 'K') return 13;
-		else return 14;
-		
-	}
-	
-	// converts integers above ten to their face card equivalent  
+
+	// converts integers above ten to their face card equivalent
 	private static void printCardHelper(int card) {
 		if ( card <= 10) System.out.print(card + " ");
 		else if ( card == 11) System.out.print("J ");
@@ -543,237 +577,293 @@ public class PokerHandEvaluator {
 		else if ( card == 13) System.out.print("K ");
 		else System.out.print("A ");
 	}
-	
+
 	// A container class to allow returning values of different types
-	private static class EvaluationInfo {
+	// cards used and kickers are card ranks (2 through 14) in ascending order
+	// (a straight is listed in straight order, so the wheel starts with the ace)
+	public static class EvaluationInfo {
 		private Category handCategory;
-		private JSONArray cardsUsed;
-		private JSONArray kickers;
-		
+		private int[] cardsUsed;
+		private int[] kickers;
+		private int score = -1;
+
 		public EvaluationInfo() {
 			handCategory = Category.HIGH_CARD;
-			cardsUsed = new JSONArray();
-			kickers = new JSONArray();
+			cardsUsed = NO_CARDS;
+			kickers = NO_CARDS;
 		}
-		
-		public EvaluationInfo(Category handCategory, JSONArray cardsUsed, JSONArray kickers) {
+
+		public EvaluationInfo(Category handCategory, int[] cardsUsed, int[] kickers) {
 			this.handCategory = handCategory;
 			this.cardsUsed = cardsUsed;
 			this.kickers = kickers;
 		}
-		
+
+		// rebuilds the category, cards used and kickers from a score
+		public EvaluationInfo(int score) {
+			this.score = score;
+			this.handCategory = categoryOf(score);
+
+			int[] used = new int[5];
+			int[] kick = new int[5];
+			int counts = decodeScore(score, used, kick);
+
+			cardsUsed = Arrays.copyOf(used, counts >>> 8);
+			kickers = Arrays.copyOf(kick, counts & 0xFF);
+		}
+
 		public Category getCategory() {
 			return this.handCategory;
 		}
-		
+
 		public void setCategory(Category handCategory) {
 			this.handCategory = handCategory;
+			this.score = -1;
 		}
-		
-		public JSONArray getCardsUsed() {
+
+		public int[] getCardsUsed() {
 			return cardsUsed;
 		}
 		// get array of cards
-		public void setCardsUsed(JSONArray cardsUsed) {
+		public void setCardsUsed(int[] cardsUsed) {
 			this.cardsUsed = cardsUsed;
+			this.score = -1;
 		}
-		
-		public JSONArray getKickers() {
+
+		public int[] getKickers() {
 			return kickers;
 		}
 		// get array of cards
-		public void setKickers(JSONArray kickers) {
+		public void setKickers(int[] kickers) {
 			this.kickers = kickers;
-		}	
+			this.score = -1;
+		}
+
+		// a single comparable strength for the hand: the better hand always has the larger score
+		// the category ordinal sits in bits 20 and up, and below it the ranks that break ties
+		// take four bits each, most significant first (for example: pair rank, then kickers
+		// from highest to lowest). unused slots are zero
+		public int getScore() {
+			if (score < 0) score = encodeScore();
+			return score;
+		}
+
+		private int encodeScore() {
+			int packed = 0;
+			int slots = 0;
+
+			switch (handCategory) {
+			case ROYAL_FLUSH:
+			case STRAIGHT_FLUSH:
+			case STRAIGHT:
+				packed = cardsUsed[4];
+				slots = 1;
+				break;
+			case FULL_HOUSE:
+				// the middle card is always part of the three of a kind
+				int trips = cardsUsed[2];
+				packed = (trips << 4) | (cardsUsed[0] == trips ? cardsUsed[4] : cardsUsed[0]);
+				slots = 2;
+				break;
+			case TWO_PAIR:
+				packed = (cardsUsed[3] << 4) | cardsUsed[0];
+				slots = 2;
+				break;
+			case FLUSH_FIVE:
+			case FIVE_OF_A_KIND:
+			case FOUR_OF_A_KIND:
+			case THREE_OF_A_KIND:
+			case ONE_PAIR:
+				packed = cardsUsed[0];
+				slots = 1;
+				break;
+			case FLUSH:
+				for (int i = cardsUsed.length - 1; i >= 0 && slots < 5; i--, slots++)
+					packed = (packed << 4) | cardsUsed[i];
+				break;
+			default:
+				break;
+			}
+
+			for (int i = kickers.length - 1; i >= 0 && slots < 5; i--, slots++)
+				packed = (packed << 4) | kickers[i];
+
+			packed <<= 4 * (5 - slots);
+			return (handCategory.ordinal() << 20) | packed;
+		}
 	}
 
-	// Uses a comparator to sort a list of hands in ascending order
-	// if showAll is set to true, it prints the entire list of sorted hands
-	// otherwise, just the winning hand is printed
+	private static final Category[] CATEGORIES = Category.values();
+
+	// the category packed into a score (see EvaluationInfo.getScore())
+	public static Category categoryOf(int score) {
+		return CATEGORIES[score >>> 20];
+	}
+
+	// writes the cards used and the kickers of a score into arrays of at least five ranks
+	// (in ascending order, like EvaluationInfo) without allocating
+	// returns the number of cards used shifted left 8 bits, or-ed with the number of kickers
+	static int decodeScore(int score, int[] cardsUsed, int[] kickers) {
+		int r0 = (score >>> 16) & 0xF;
+		int r1 = (score >>> 12) & 0xF;
+		int used = 0;
+		int kick = 0;
+
+		switch (categoryOf(score)) {
+		case FLUSH_FIVE:
+		case FIVE_OF_A_KIND:
+			while (used < 5) cardsUsed[used++] = r0;
+			break;
+		case ROYAL_FLUSH:
+		case STRAIGHT_FLUSH:
+		case STRAIGHT:
+			// the wheel is listed with the ace first
+			if (r0 == 5) cardsUsed[used++] = 14;
+			for (int r = Math.max(r0 - 4, 2); r <= r0; r++) cardsUsed[used++] = r;
+			break;
+		case FOUR_OF_A_KIND:
+			while (used < 4) cardsUsed[used++] = r0;
+			kick = ascendingRanks(score, 1, 2, kickers);
+			break;
+		case FULL_HOUSE:
+			int first = Math.min(r0, r1);
+			int second = Math.max(r0, r1);
+			cardsUsed[used++] = first;
+			cardsUsed[used++] = first;
+			if (first == r0) cardsUsed[used++] = first;
+			cardsUsed[used++] = second;
+			cardsUsed[used++] = second;
+			if (second == r0) cardsUsed[used++] = second;
+			break;
+		case FLUSH:
+			used = ascendingRanks(score, 0, 5, cardsUsed);
+			break;
+		case THREE_OF_A_KIND:
+			while (used < 3) cardsUsed[used++] = r0;
+			kick = ascendingRanks(score, 1, 3, kickers);
+			break;
+		case TWO_PAIR:
+			cardsUsed[used++] = r1;
+			cardsUsed[used++] = r1;
+			cardsUsed[used++] = r0;
+			cardsUsed[used++] = r0;
+			kick = ascendingRanks(score, 2, 3, kickers);
+			break;
+		case ONE_PAIR:
+			cardsUsed[used++] = r0;
+			cardsUsed[used++] = r0;
+			kick = ascendingRanks(score, 1, 4, kickers);
+			break;
+		default:
+			kick = ascendingRanks(score, 0, 5, kickers);
+		}
+
+		return (used << 8) | kick;
+	}
+
+	// writes the non-zero ranks of score slots from to to - 1 (slot 0 is the most
+	// significant) in ascending order and returns how many there were
+	private static int ascendingRanks(int score, int from, int to, int[] ranks) {
+		int n = 0;
+		for (int i = to - 1; i >= from; i--) {
+			int rank = (score >>> (16 - 4 * i)) & 0xF;
+			if (rank != 0) ranks[n++] = rank;
+		}
+		return n;
+	}
+
+	// prints the winning hand; if several hands tie for first (a split pot) all of them are printed
+	// if showAll is set to true, it ranks the list in ascending order (the winner is last),
+	// reorders the list itself to match and prints the entire list of sorted hands
 	public static void findBestHand(ArrayList<JSONArray> hands, boolean showAll) {
-		
-		Collections.sort(hands, new Comparator<JSONArray>() {
 
-			public int compare(JSONArray hand, JSONArray otherHand) {
-				return compareHelper(hand, otherHand);
-			}
-         
-        });
-		
-		
 		if (showAll){
-			for (JSONArray hand : hands) 
-				printEvaluationInfo(hand);	
+			ArrayList<RankedHand> ranked = rankHands(hands);
+			for (int i = 0; i < ranked.size(); i++)
+				hands.set(i, ranked.get(i).getHand());
+			for (RankedHand hand : ranked)
+				printEvaluationInfo(hand.getHand(), hand.getInfo());
 		} else {
-			printEvaluationInfo(hands.get(hands.size()-1));
-		}
-	}
-	
-	// sets up information for below helper methods and returns final result
-	private static int compareHelper(JSONArray hand, JSONArray otherHand) {	
-		
-		EvaluationInfo handOne = evalHand(hand);
-		EvaluationInfo handTwo = evalHand(otherHand);
-		int categoryCompare = handOne.getCategory().compareTo(handTwo.getCategory());
-		if(categoryCompare != 0) {
-			return categoryCompare;
-		} 
-		
-		Category cat = handOne.getCategory();
-		boolean fullHouse = cat == Category.FULL_HOUSE ? true : false;
-		boolean twoPair = cat == Category.TWO_PAIR ? true : false;
-		boolean fourKind = cat == Category.FOUR_OF_A_KIND ? true : false;
-		boolean threeKind = cat == Category.THREE_OF_A_KIND ? true : false;
-		boolean onePair = cat == Category.ONE_PAIR ? true : false;
-		boolean highCard = cat == Category.HIGH_CARD ? true : false;
-		boolean flush = cat == Category.FLUSH ? true : false;
-
-		if (cat == Category.ROYAL_FLUSH) return 0;
-		
-		if (cat == Category.STRAIGHT_FLUSH || cat == Category.STRAIGHT) {
-			return straightFlushStraightTieBreaker(handOne, handTwo);
-		}
-
-		if (fullHouse || twoPair) {
-			return twoUsedRanksTieBreaker(handOne, handTwo, cat);
-		}
-
-		if (fourKind || threeKind || onePair) {
-			return oneUsedRankTieBreaker(handOne, handTwo, cat);
-		}
-
-		if (highCard || flush) {
-			return checkAllFiveTieBreaker(handOne, handTwo, cat);
-			
-		}
-		
-		return 0;
-	}
-	
-	// breaks ties between straight flushes and straights
-	private static int straightFlushStraightTieBreaker(EvaluationInfo handOne, EvaluationInfo handTwo){
-		Integer handOneHighCard = handOne.getCardsUsed().getInt(4);
-		Integer handTwoHighCard = handTwo.getCardsUsed().getInt(4);
-		
-		return handOneHighCard.compareTo(handTwoHighCard);
-	}
-	
-	// breaks ties between hands that require cards of two different ranks
-	private static int twoUsedRanksTieBreaker(EvaluationInfo handOne, EvaluationInfo handTwo, Category cat) {
-		boolean fullHouse = cat == Category.FULL_HOUSE ? true : false;
-		boolean twoPair = cat == Category.TWO_PAIR ? true : false;
-		
-		Integer handOneHighCard = handOne.getCardsUsed().getInt(3);
-		Integer handTwoHighCard = handTwo.getCardsUsed().getInt(3);
-		Integer highCardComparison = handOneHighCard.compareTo(handTwoHighCard);
-		
-		if (highCardComparison != 0) {
-			return highCardComparison;
-		}
-		
-		Integer handOneLowCard = handOne.getCardsUsed().getInt(0);
-		Integer handTwoLowCard = handTwo.getCardsUsed().getInt(0);
-		Integer lowCardComparison = handOneLowCard.compareTo(handTwoLowCard);
-			
-		if (lowCardComparison != 0) {
-			return lowCardComparison;
-		} if (fullHouse) {
-			return 0;
-		}
-		// kicker for two pair
-		Integer handOneKicker = handOne.getKickers().getInt(0);
-		Integer handTwoKicker = handTwo.getKickers().getInt(0);
-		Integer kickerComparison = handOneKicker.compareTo(handTwoKicker);
-		
-		return kickerComparison;
-		
-		//return lowCardComparison;
-		//else return highCardComparison;
-	}
-	
-	// breaks ties between hands that require cards of one rank
-	private static int oneUsedRankTieBreaker(EvaluationInfo handOne, EvaluationInfo handTwo, Category cat) {
-		
-		boolean fourKind = cat == Category.FOUR_OF_A_KIND ? true : false;
-		boolean threeKind = cat == Category.THREE_OF_A_KIND ? true : false;
-		boolean onePair = cat == Category.ONE_PAIR ? true : false;
-		
-		// check highCard
-		Integer handOneHighCard = handOne.getCardsUsed().getInt(0);
-		Integer handTwoHighCard = handTwo.getCardsUsed().getInt(0);
-		Integer highCardComparison = handOneHighCard.compareTo(handTwoHighCard);
-
-		if (highCardComparison == 0) {
-
-			JSONArray handOneKickers = handOne.getKickers();
-			JSONArray handTwoKickers = handTwo.getKickers();
-			int handOneKickersLength = handOneKickers.length();
-			int handTwoKickersLength = handOneKickers.length();
-
-			Integer handOneFirstKicker = handOneKickers.getInt(handOneKickersLength-1);
-			Integer handTwoFirstKicker = handTwoKickers.getInt(handTwoKickersLength-1);
-			Integer firstKickerComparison = handOneFirstKicker.compareTo(handTwoFirstKicker);
-
-			if (firstKickerComparison != 0) {
-				return firstKickerComparison;
-			} else if (fourKind)
-			{
-				return 0;
-			}
+			for (RankedHand winner : findWinners(hands))
+				printEvaluationInfo(winner.getHand(), winner.getInfo());
+		}
+	}
 
-			Integer handOneSecondKicker = handOneKickers.getInt(handOneKickersLength-2);
-			Integer handTwoSecondKicker = handTwoKickers.getInt(handTwoKickersLength-2);
-			Integer secondKickerComparison = handOneSecondKicker.compareTo(handTwoSecondKicker);
+	// returns every hand that ties for the best hand, in input order, in one pass without sorting
+	public static ArrayList<RankedHand> findWinners(List<JSONArray> hands) {
+		EvaluationInfo[] infos = evalHands(hands);
+		return select(hands, infos, Showdown.winners(scores(infos)));
+	}
 
-			if (secondKickerComparison != 0) {
-				return secondKickerComparison;
-			} if (threeKind) {
-				return 0;
-			}
+	// returns the k best hands, best first, in one pass without sorting the whole list
+	// equal hands keep their input order
+	public static ArrayList<RankedHand> topHands(List<JSONArray> hands, int k) {
+		EvaluationInfo[] infos = evalHands(hands);
+		return select(hands, infos, Showdown.topK(scores(infos), k));
+	}
+
+	private static EvaluationInfo[] evalHands(List<JSONArray> hands) {
+		EvaluationInfo[] infos = new EvaluationInfo[hands.size()];
+		for (int i = 0; i < infos.length; i++) infos[i] = evalHand(hands.get(i));
+		return infos;
+	}
+
+	private static int[] scores(EvaluationInfo[] infos) {
+		int[] scores = new int[infos.length];
+		for (int i = 0; i < scores.length; i++) scores[i] = infos[i].getScore();
+		return scores;
+	}
+
+	private static ArrayList<RankedHand> select(List<JSONArray> hands, EvaluationInfo[] infos, int[] indices) {
+		ArrayList<RankedHand> selected = new ArrayList<RankedHand>(indices.length);
+		for (int i : indices) selected.add(new RankedHand(hands.get(i), infos[i]));
+		return selected;
+	}
+
+	// evaluates each hand exactly once and returns the hands with their evaluations
+	// in ascending order of strength (the winner is last); equal hands keep their input order
+	public static ArrayList<RankedHand> rankHands(List<JSONArray> hands) {
+
+		EvaluationInfo[] infos = evalHands(hands);
+
+		// decorate: pack each score with the hand's index so a primitive sort
+		// orders by score and keeps ties in input order
+		long[] keys = new long[infos.length];
+		for (int i = 0; i < keys.length; i++)
+			keys[i] = ((long) infos[i].getScore() << 32) | i;
+
+		Arrays.sort(keys);
+
+		// undecorate
+		ArrayList<RankedHand> ranked = new ArrayList<RankedHand>(keys.length);
+		for (long key : keys) {
+			int i = (int) key;
+			ranked.add(new RankedHand(hands.get(i), infos[i]));
+		}
+		return ranked;
+	}
+
+	// a hand together with its evaluation
+	public static class RankedHand {
+		private final JSONArray hand;
+		private final EvaluationInfo info;
+
+		public RankedHand(JSONArray hand, EvaluationInfo info) {
+			this.hand = hand;
+			this.info = info;
+		}
+
+		public JSONArray getHand() {
+			return hand;
+		}
+
+		public EvaluationInfo getInfo() {
+			return info;
+		}
+
+		public int getScore() {
+			return info.getScore();
+		}
+	}
 
-			Integer handOneThirdKicker = handOneKickers.getInt(handOneKickersLength-3);
-			Integer handTwoThirdKicker = handTwoKickers.getInt(handTwoKickersLength-3);
-			Integer thirdKickerComparison = handOneThirdKicker.compareTo(handTwoThirdKicker);
-
-			if (thirdKickerComparison != 0) {
-				return thirdKickerComparison;
-			} else return 0;
-
-		} else return highCardComparison;
-	}
-
-	// breaks ties between flushes and high card, where potentially every card needs to be checked
-	private static int checkAllFiveTieBreaker(EvaluationInfo handOne, EvaluationInfo handTwo, Category cat){
-		
-		boolean highCard = cat == Category.HIGH_CARD ? true : false;
-		boolean flush = cat == Category.FLUSH ? true : false;
-		
-		JSONArray handOneArray;
-		JSONArray handTwoArray;
-		
-		if (highCard) {
-			handOneArray = handOne.getKickers();
-			handTwoArray = handTwo.getKickers();
-		} else {
-			handOneArray = handOne.getCardsUsed();
-			handTwoArray = handTwo.getCardsUsed();
-		}
-		
-		Integer handOneValue;
-		Integer handTwoValue;
-		Integer valueComparison;
-		for (int i = 4; i >= 0; i--) {
-			handOneValue = handOneArray.getInt(i);
-			handTwoValue = handTwoArray.getInt(i);
-			valueComparison = handOneValue.compareTo(handTwoValue);
-			
-			if (valueComparison != 0) {
-				return valueComparison;
-			}	
-		}
-		
-		return 0;
-		
-	}
-	
 }
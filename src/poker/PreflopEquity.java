@@ -0,0 +1,360 @@
+package poker;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/***
+ * exact heads-up all-in equities of every pair of hole cards before the flop
+ *
+ * the 1,326 x 1,326 matrix holds the equity of one combo (two hole cards)
+ * against another over all 1,712,304 boards, as 16-bit fixed point (65535
+ * = 100%), in a table file (see TableFile) that is memory-mapped when
+ * loaded, so a lookup is one char load. the 169 x 169 matrix of preflop
+ * classes (see SuitIsomorphism) is worked out from it when it is loaded,
+ * each class matchup averaged over the combos that do not share a card.
+ *
+ * generating only computes one matchup per suit isomorphism class of the
+ * two hands (93,769 classes), and only one of each class and its mirror
+ * image, since their equities add up to 1; about 47,000 enumerations in
+ * all. matchups are computed in parallel batches on a ForkJoinPool and
+ * every finished batch is appended to a checkpoint file next to the
+ * output, so an interrupted run picks up where it stopped.
+ *
+ * to generate: java -cp bin poker.PreflopEquity preflop.bin
+ * (about ten minutes on one core; running it again resumes)
+ */
+public final class PreflopEquity {
+
+	public static final int COMBOS = 1326;
+
+	// 16-bit fixed point
+	static final int ONE = 0xFFFF;
+
+	// version of the matrix in a table file, bump it when its layout or contents change
+	static final int TABLES_VERSION = 1;
+
+	// checkpoints start with this, then the number of matchups to compute, then an equity per matchup
+	private static final int CHECKPOINT_MAGIC = 0x50455131;
+
+	// combo index -> first card | second card << 8, lower card first
+	private static final int[] COMBO_CARDS = new int[COMBOS];
+
+	static {
+		for (int c1 = 1; c1 < Card.NUM_CARDS; c1++) {
+			for (int c0 = 0; c0 < c1; c0++) COMBO_CARDS[comboIndex(c0, c1)] = c0 | c1 << 8;
+		}
+	}
+
+	private final CharBuffer matrix;
+	private final float[] classMatrix;
+
+	private PreflopEquity(CharBuffer matrix) {
+		this.matrix = matrix;
+		this.classMatrix = classMatrix(matrix);
+	}
+
+	// maps a matrix written by generate()
+	public static PreflopEquity load(File file) throws IOException {
+		Buffer[] tables = TableFile.map(file, TABLES_VERSION);
+		if (tables.length != 1 || !(tables[0] instanceof CharBuffer) || tables[0].limit() != COMBOS * COMBOS)
+			throw new IOException(file + " does not hold the preflop equity matrix; regenerate it");
+		return new PreflopEquity((CharBuffer) tables[0]);
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length != 1) {
+			System.err.println("usage: java poker.PreflopEquity <file>");
+			System.exit(1);
+		}
+		generate(new File(args[0]), ForkJoinPool.commonPool(), Integer.MAX_VALUE, System.out);
+	}
+
+	// index (0 to 1325) of two distinct cards, in either order
+	public static int comboIndex(int c0, int c1) {
+		if (c0 == c1) throw new IllegalArgumentException("a combo needs two different cards");
+		int high = Math.max(c0, c1);
+		int low = Math.min(c0, c1);
+		return high * (high - 1) / 2 + low;
+	}
+
+	// the two cards of a combo, lower card first
+	public static int[] comboCards(int combo) {
+		return new int[] {COMBO_CARDS[combo] & 0xFF, COMBO_CARDS[combo] >> 8};
+	}
+
+	// equity of one combo against another; they may not share a card
+	public double equity(int combo, int versus) {
+		if ((comboMask(combo) & comboMask(versus)) != 0)
+			throw new IllegalArgumentException("the combos share a card");
+		return (double) matrix.get(combo * COMBOS + versus) / ONE;
+	}
+
+	public double equity(int[] hole, int[] versus) {
+		return equity(comboIndex(hole[0], hole[1]), comboIndex(versus[0], versus[1]));
+	}
+
+	// equity of one preflop class against another (see SuitIsomorphism.preflopIndex()),
+	// averaged over all their combos that do not share a card
+	public double classEquity(int preflopIndex, int versusIndex) {
+		return classMatrix[preflopIndex * SuitIsomorphism.PREFLOP_CLASSES + versusIndex];
+	}
+
+	// exact equity of hole cards a0 a1 against b0 b1 over every board, ties counting half
+	public static double headsUp(int a0, int a1, int b0, int b1) {
+		long dead = Card.bit(a0) | Card.bit(a1) | Card.bit(b0) | Card.bit(b1);
+		if (Long.bitCount(dead) != 4) throw new IllegalArgumentException("a card is dealt twice");
+
+		int[] deck = new int[Card.NUM_CARDS - 4];
+		int n = 0;
+		for (int card = 0; card < Card.NUM_CARDS; card++) {
+			if ((dead & Card.bit(card)) == 0) deck[n++] = card;
+		}
+		long[] keys = new long[n];
+		long[] bits = new long[n];
+		for (int i = 0; i < n; i++) {
+			keys[i] = SevenCardLookup.cardKey(deck[i]);
+			bits[i] = Card.bit(deck[i]);
+		}
+
+		long aKey = SevenCardLookup.cardKey(a0) + SevenCardLookup.cardKey(a1);
+		long aMask = Card.bit(a0) | Card.bit(a1);
+		long bKey = SevenCardLookup.cardKey(b0) + SevenCardLookup.cardKey(b1);
+		long bMask = Card.bit(b0) | Card.bit(b1);
+
+		// the board is built up a card at a time, so shared cards are only added once
+		long wins = 0;
+		long ties = 0;
+		long boards = 0;
+		for (int i = 0; i < n; i++) {
+			long k1 = keys[i];
+			long m1 = bits[i];
+			for (int j = i + 1; j < n; j++) {
+				long k2 = k1 + keys[j];
+				long m2 = m1 | bits[j];
+				for (int k = j + 1; k < n; k++) {
+					long k3 = k2 + keys[k];
+					long m3 = m2 | bits[k];
+					for (int l = k + 1; l < n; l++) {
+						long k4 = k3 + keys[l];
+						long m4 = m3 | bits[l];
+						for (int m = l + 1; m < n; m++) {
+							long key = k4 + keys[m];
+							long mask = m4 | bits[m];
+							int a = SevenCardLookup.score(key + aKey, mask | aMask);
+							int b = SevenCardLookup.score(key + bKey, mask | bMask);
+							if (a > b) wins++;
+							else if (a == b) ties++;
+							boards++;
+						}
+					}
+				}
+			}
+		}
+		return (wins + ties / 2.0) / boards;
+	}
+
+	// computes the matrix into file, resuming from its checkpoint if there is one. stops after
+	// maxMatchups enumerations and returns false if the matrix is not finished yet
+	public static boolean generate(File file, ForkJoinPool pool, int maxMatchups, PrintStream log) throws IOException {
+		int[] classes = classes();
+
+		// compute a class unless its mirror image comes first
+		int[] mirrors = new int[classes.length];
+		int numMatchups = 0;
+		for (int k = 0; k < classes.length; k++) {
+			mirrors[k] = Arrays.binarySearch(classes, canonicalKey(comboMask(classes[k] & 0xFFF), comboMask(classes[k] >> 12)));
+			if (mirrors[k] >= k) numMatchups++;
+		}
+		int[] matchups = new int[numMatchups];
+		numMatchups = 0;
+		for (int k = 0; k < classes.length; k++) {
+			if (mirrors[k] >= k) matchups[numMatchups++] = k;
+		}
+
+		File checkpoint = new File(file.getPath() + ".partial");
+		double[] equities = readCheckpoint(checkpoint, matchups.length);
+		int done = equities.length;
+		equities = Arrays.copyOf(equities, matchups.length);
+		if (done > 0) log.println("Resuming " + file + " at " + done + " of " + matchups.length + " matchups");
+
+		DataOutputStream out = null;
+		FileOutputStream stream = null;
+		try {
+			stream = new FileOutputStream(checkpoint, done > 0);
+			out = new DataOutputStream(stream);
+			if (done == 0) {
+				out.writeInt(CHECKPOINT_MAGIC);
+				out.writeInt(matchups.length);
+			}
+
+			int resumedAt = done;
+			int stop = (int) Math.min(matchups.length, (long) done + maxMatchups);
+			int batch = Math.max(16, 8 * pool.getParallelism());
+			long start = System.nanoTime();
+			while (done < stop) {
+				int end = Math.min(stop, done + batch);
+				pool.invoke(new MatchupTask(classes, matchups, equities, done, end));
+				for (int i = done; i < end; i++) out.writeDouble(equities[i]);
+				out.flush();
+				stream.getFD().sync();
+
+				long elapsed = System.nanoTime() - start;
+				log.printf("%d of %d matchups, %.1f ms per matchup%n", end, matchups.length,
+						elapsed / 1e6 / (end - resumedAt));
+				done = end;
+			}
+		} finally {
+			if (out != null) out.close();
+			else if (stream != null) stream.close();
+		}
+		if (done < matchups.length) return false;
+
+		// every class from its own equity or its mirror image's
+		double[] classEquities = new double[classes.length];
+		for (int i = 0; i < matchups.length; i++) classEquities[matchups[i]] = equities[i];
+		for (int k = 0; k < classes.length; k++) {
+			if (mirrors[k] < k) classEquities[k] = 1 - classEquities[mirrors[k]];
+		}
+
+		char[] matrix = new char[COMBOS * COMBOS];
+		for (int i = 0; i < COMBOS; i++) {
+			for (int j = 0; j < COMBOS; j++) {
+				if ((comboMask(i) & comboMask(j)) != 0) continue;
+				int k = Arrays.binarySearch(classes, canonicalKey(comboMask(i), comboMask(j)));
+				matrix[i * COMBOS + j] = (char) Math.round(classEquities[k] * ONE);
+			}
+		}
+		TableFile.write(file, TABLES_VERSION, CharBuffer.wrap(matrix));
+		TableFile.verify(file);
+		if (!checkpoint.delete()) log.println("Could not delete " + checkpoint);
+		log.println("Wrote " + file);
+		return true;
+	}
+
+	// the equities already in a checkpoint, or none if there is no checkpoint
+	private static double[] readCheckpoint(File checkpoint, int numMatchups) throws IOException {
+		// a header that was cut off is no progress
+		if (checkpoint.length() < 8) return new double[0];
+
+		// drop a matchup that was cut off in the middle of being written
+		long entries = (checkpoint.length() - 8) / 8;
+		RandomAccessFile raf = new RandomAccessFile(checkpoint, "rw");
+		try {
+			if (raf.readInt() != CHECKPOINT_MAGIC || raf.readInt() != numMatchups)
+				throw new IOException(checkpoint + " is not a checkpoint of this matrix; delete it");
+			raf.setLength(8 + 8 * entries);
+		} finally {
+			raf.close();
+		}
+
+		double[] equities = new double[(int) entries];
+		DataInputStream in = new DataInputStream(new FileInputStream(checkpoint));
+		try {
+			in.readInt();
+			in.readInt();
+			for (int i = 0; i < equities.length; i++) equities[i] = in.readDouble();
+		} finally {
+			in.close();
+		}
+		return equities;
+	}
+
+	// class keys (see classKey()) of every canonical pair of combos, in ascending order
+	private static int[] classes() {
+		final int[] classes = new int[93769];
+		final int[] n = new int[1];
+		SuitIsomorphism.forEachClass(new int[] {2, 2}, new SuitIsomorphism.ClassVisitor() {
+			public void visit(long[] rounds, int weight) {
+				int[] a = Card.fromMask(rounds[0]);
+				int[] b = Card.fromMask(rounds[1]);
+				classes[n[0]++] = classKey(comboIndex(a[0], a[1]), comboIndex(b[0], b[1]));
+			}
+		});
+		Arrays.sort(classes);
+		return classes;
+	}
+
+	// class key of a pair of combos given as card masks
+	private static int canonicalKey(long a, long b) {
+		long[] canonical = SuitIsomorphism.canonical(a, b);
+		int[] x = Card.fromMask(canonical[0]);
+		int[] y = Card.fromMask(canonical[1]);
+		return classKey(comboIndex(x[0], x[1]), comboIndex(y[0], y[1]));
+	}
+
+	private static int classKey(int combo, int versus) {
+		return combo << 12 | versus;
+	}
+
+	private static long comboMask(int combo) {
+		return Card.bit(COMBO_CARDS[combo] & 0xFF) | Card.bit(COMBO_CARDS[combo] >> 8);
+	}
+
+	// average equity of each pair of preflop classes
+	private static float[] classMatrix(CharBuffer matrix) {
+		int classes = SuitIsomorphism.PREFLOP_CLASSES;
+		double[] sums = new double[classes * classes];
+		int[] counts = new int[classes * classes];
+		for (int i = 0; i < COMBOS; i++) {
+			int[] a = comboCards(i);
+			int pa = SuitIsomorphism.preflopIndex(a[0], a[1]);
+			for (int j = 0; j < COMBOS; j++) {
+				if ((comboMask(i) & comboMask(j)) != 0) continue;
+				int[] b = comboCards(j);
+				int cell = pa * classes + SuitIsomorphism.preflopIndex(b[0], b[1]);
+				sums[cell] += (double) matrix.get(i * COMBOS + j) / ONE;
+				counts[cell]++;
+			}
+		}
+
+		float[] classMatrix = new float[classes * classes];
+		for (int cell = 0; cell < classMatrix.length; cell++) {
+			if (counts[cell] > 0) classMatrix[cell] = (float) (sums[cell] / counts[cell]);
+		}
+		return classMatrix;
+	}
+
+	// computes the equities of matchups[from] to matchups[to - 1], one task per matchup
+	private static class MatchupTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final int[] classes;
+		private final int[] matchups;
+		private final double[] equities;
+		private final int from;
+		private final int to;
+
+		MatchupTask(int[] classes, int[] matchups, double[] equities, int from, int to) {
+			this.classes = classes;
+			this.matchups = matchups;
+			this.equities = equities;
+			this.from = from;
+			this.to = to;
+		}
+
+		protected void compute() {
+			if (to - from == 1) {
+				int key = classes[matchups[from]];
+				int[] a = comboCards(key >> 12);
+				int[] b = comboCards(key & 0xFFF);
+				equities[from] = headsUp(a[0], a[1], b[0], b[1]);
+				return;
+			}
+
+			int mid = (from + to) >>> 1;
+			invokeAll(new MatchupTask(classes, matchups, equities, from, mid),
+					new MatchupTask(classes, matchups, equities, mid, to));
+		}
+	}
+}
@@ -0,0 +1,388 @@
+package poker;
+
+import java.util.Arrays;
+
+/***
+ * a weighted range of hole cards: a weight from 0 to 1 for each of the
+ * 1,326 combos (indexed as in PreflopEquity.comboIndex())
+ *
+ * ranges are parsed from the usual notation, comma separated:
+ *   AA, AKs, AKo, AK (suited and offsuit), AhKh (one combo), TT+ (tens or
+ *   better), ATs+ (ATs to AKs), TT-77, A5s-A2s, any (every combo)
+ * each item can end in :weight, e.g. "QQ+, AKs:0.5". later items replace
+ * the weight of earlier ones.
+ *
+ * besides the weights a range keeps a bitset of the combos in it, and a
+ * bitset of the combos using each card is precomputed, so dropping the
+ * combos blocked by dead cards is a few word operations per card.
+ *
+ * equity() plays one range against another on a board. for each complete
+ * board every combo in either range is scored once, both ranges are
+ * sorted by score, and a single sweep up the villain range accumulates
+ * the weight beaten and tied, in total and per card; a hero combo's share
+ * then comes from the totals minus the villain weight on its two cards
+ * (plus the villain weight of the identical combo, counted twice), instead
+ * of a showdown against every villain combo
+ */
+public final class Range {
+
+	public static final int COMBOS = PreflopEquity.COMBOS;
+
+	private static final int WORDS = (COMBOS + 63) / 64;
+
+	private static final String RANKS = "23456789TJQKA";
+	private static final String SUITS = "hcds";
+
+	// combos using each card, as bitsets
+	private static final long[][] CARD_COMBOS = new long[Card.NUM_CARDS][WORDS];
+
+	// the two cards of each combo, lower card first, and as a mask
+	private static final int[] FIRST_CARDS = new int[COMBOS];
+	private static final int[] SECOND_CARDS = new int[COMBOS];
+	private static final long[] COMBO_MASKS = new long[COMBOS];
+
+	static {
+		for (int combo = 0; combo < COMBOS; combo++) {
+			int[] cards = PreflopEquity.comboCards(combo);
+			FIRST_CARDS[combo] = cards[0];
+			SECOND_CARDS[combo] = cards[1];
+			COMBO_MASKS[combo] = Card.bit(cards[0]) | Card.bit(cards[1]);
+			for (int card : cards) CARD_COMBOS[card][combo >> 6] |= 1L << combo;
+		}
+	}
+
+	private final float[] weights = new float[COMBOS];
+	private final long[] combos = new long[WORDS];
+
+	public Range() {
+	}
+
+	// parses a range, see above
+	public static Range parse(String notation) {
+		Range range = new Range();
+		for (String item : notation.split(",")) {
+			item = item.trim();
+			if (item.isEmpty()) continue;
+
+			float weight = 1;
+			int colon = item.indexOf(':');
+			if (colon >= 0) {
+				try {
+					weight = Float.parseFloat(item.substring(colon + 1).trim());
+				} catch (NumberFormatException e) {
+					throw new IllegalArgumentException("bad weight in " + item);
+				}
+				item = item.substring(0, colon).trim();
+			}
+			range.addItem(item, weight);
+		}
+		return range;
+	}
+
+	public float weight(int combo) {
+		return weights[combo];
+	}
+
+	public boolean contains(int combo) {
+		return (combos[combo >> 6] & (1L << combo)) != 0;
+	}
+
+	// sets a combo's weight; 0 takes it out of the range
+	public void set(int combo, float weight) {
+		if (weight < 0 || weight > 1 || Float.isNaN(weight))
+			throw new IllegalArgumentException("a weight is from 0 to 1, got " + weight);
+		weights[combo] = weight;
+		if (weight > 0) combos[combo >> 6] |= 1L << combo;
+		else combos[combo >> 6] &= ~(1L << combo);
+	}
+
+	// number of combos in the range
+	public int size() {
+		int size = 0;
+		for (long word : combos) size += Long.bitCount(word);
+		return size;
+	}
+
+	// sum of the weights
+	public double totalWeight() {
+		double total = 0;
+		for (int combo = nextCombo(0); combo >= 0; combo = nextCombo(combo + 1)) total += weights[combo];
+		return total;
+	}
+
+	// the first combo in the range from combo up, or -1
+	public int nextCombo(int combo) {
+		int word = combo >> 6;
+		if (word >= WORDS) return -1;
+		long bits = combos[word] & (-1L << combo);
+		while (bits == 0) {
+			if (++word == WORDS) return -1;
+			bits = combos[word];
+		}
+		return word * 64 + Long.numberOfTrailingZeros(bits);
+	}
+
+	// a copy of the range without the combos that use any of the dead cards (a card mask)
+	public Range without(long dead) {
+		Range range = new Range();
+		System.arraycopy(combos, 0, range.combos, 0, WORDS);
+		for (int card = 0; card < Card.NUM_CARDS; card++) {
+			if ((dead & Card.bit(card)) == 0) continue;
+			for (int w = 0; w < WORDS; w++) range.combos[w] &= ~CARD_COMBOS[card][w];
+		}
+		for (int combo = range.nextCombo(0); combo >= 0; combo = range.nextCombo(combo + 1))
+			range.weights[combo] = weights[combo];
+		return range;
+	}
+
+	// combos in the range, in index order
+	public int[] combos() {
+		int[] list = new int[size()];
+		int n = 0;
+		for (int combo = nextCombo(0); combo >= 0; combo = nextCombo(combo + 1)) list[n++] = combo;
+		return list;
+	}
+
+	public String toString() {
+		return "Range[" + size() + " combos, weight " + String.format("%.2f", totalWeight()) + "]";
+	}
+
+	// equity of the hero range against the villain range over every run-out of a board
+	// of three to five cards, weighting each pair of combos by the product of their weights
+	public static double equity(Range hero, Range villain, int[] board) {
+		double[] shares = new double[COMBOS];
+		double[] totals = new double[COMBOS];
+		accumulate(hero, villain, board, shares, totals);
+
+		double share = 0;
+		double total = 0;
+		for (int combo = hero.nextCombo(0); combo >= 0; combo = hero.nextCombo(combo + 1)) {
+			share += hero.weights[combo] * shares[combo];
+			total += hero.weights[combo] * totals[combo];
+		}
+		return total > 0 ? share / total : Double.NaN;
+	}
+
+	// equity of each hero combo against the villain range (NaN for combos that are not in
+	// the hero range, are blocked by the board or have no villain combo left to play)
+	public static double[] comboEquities(Range hero, Range villain, int[] board) {
+		double[] shares = new double[COMBOS];
+		double[] totals = new double[COMBOS];
+		accumulate(hero, villain, board, shares, totals);
+
+		double[] equities = new double[COMBOS];
+		for (int combo = 0; combo < COMBOS; combo++)
+			equities[combo] = totals[combo] > 0 ? shares[combo] / totals[combo] : Double.NaN;
+		return equities;
+	}
+
+	// for each hero combo, adds up the villain weight it beats (ties counting half) and
+	// the villain weight it can play against, over every run-out
+	private static void accumulate(Range hero, Range villain, int[] board, double[] shares, double[] totals) {
+		if (board.length < 3 || board.length > 5)
+			throw new IllegalArgumentException("a board has three to five cards, got " + board.length);
+		long boardMask = Card.mask(board);
+		if (Long.bitCount(boardMask) != board.length) throw new IllegalArgumentException("a card is dealt twice");
+
+		long boardKey = 0L;
+		for (int card : board) boardKey += SevenCardLookup.cardKey(card);
+
+		Sweep sweep = new Sweep(hero, villain);
+		if (board.length == 5) {
+			sweep.showdown(boardKey, boardMask, shares, totals);
+			return;
+		}
+
+		int[] deck = Card.fromMask(~boardMask & ((1L << Card.NUM_CARDS) - 1));
+		for (int i = 0; i < deck.length; i++) {
+			long key = boardKey + SevenCardLookup.cardKey(deck[i]);
+			long mask = boardMask | Card.bit(deck[i]);
+			if (board.length == 4) {
+				sweep.showdown(key, mask, shares, totals);
+				continue;
+			}
+			for (int j = i + 1; j < deck.length; j++)
+				sweep.showdown(key + SevenCardLookup.cardKey(deck[j]), mask | Card.bit(deck[j]), shares, totals);
+		}
+	}
+
+	// scratch space for sweeping one board after another. a board is usually complete, but
+	// a flop or turn works too, for the strength of the cards as they are (see HandStrength)
+	static class Sweep {
+		private final Range hero;
+		private final Range villain;
+		private final int[] heroCombos;
+		private final int[] villainCombos;
+		private final long[] heroSorted;
+		private final long[] villainSorted;
+		private final double[] beatenByCard = new double[Card.NUM_CARDS];
+		private final double[] tiedByCard = new double[Card.NUM_CARDS];
+		private final double[] liveByCard = new double[Card.NUM_CARDS];
+
+		Sweep(Range hero, Range villain) {
+			this.hero = hero;
+			this.villain = villain;
+			this.heroCombos = hero.combos();
+			this.villainCombos = villain.combos();
+			this.heroSorted = new long[heroCombos.length];
+			// a range against itself is only sorted once
+			this.villainSorted = hero == villain ? heroSorted : new long[villainCombos.length];
+		}
+
+		// adds each hero combo's share and the villain weight it plays against on one board
+		void showdown(long boardKey, long boardMask, double[] shares, double[] totals) {
+			int numHero = sort(hero, heroCombos, heroSorted, boardKey, boardMask);
+			int numVillain = hero == villain ? numHero : sort(villain, villainCombos, villainSorted, boardKey, boardMask);
+
+			// villain weight still live on this board, in total and by card
+			Arrays.fill(liveByCard, 0);
+			double live = 0;
+			for (int v = 0; v < numVillain; v++) {
+				int combo = (int) (villainSorted[v] & 0x7FF);
+				float w = villain.weights[combo];
+				live += w;
+				addByCard(liveByCard, combo, w);
+			}
+
+			Arrays.fill(beatenByCard, 0);
+			double beaten = 0;
+			int v = 0;
+			for (int h = 0; h < numHero; ) {
+				int score = (int) (heroSorted[h] >>> 11);
+
+				// villain combos below this score are beaten
+				while (v < numVillain && (int) (villainSorted[v] >>> 11) < score) {
+					int combo = (int) (villainSorted[v] & 0x7FF);
+					beaten += villain.weights[combo];
+					addByCard(beatenByCard, combo, villain.weights[combo]);
+					v++;
+				}
+
+				// and those with the same score tie
+				Arrays.fill(tiedByCard, 0);
+				double tied = 0;
+				int end = v;
+				while (end < numVillain && (int) (villainSorted[end] >>> 11) == score) {
+					int combo = (int) (villainSorted[end] & 0x7FF);
+					tied += villain.weights[combo];
+					addByCard(tiedByCard, combo, villain.weights[combo]);
+					end++;
+				}
+
+				for (; h < numHero && (int) (heroSorted[h] >>> 11) == score; h++) {
+					int combo = (int) (heroSorted[h] & 0x7FF);
+					int c0 = FIRST_CARDS[combo];
+					int c1 = SECOND_CARDS[combo];
+
+					// villain combos sharing a card with this one cannot be dealt; the identical
+					// combo is taken away twice and has this combo's score, so it is tied
+					double same = villain.contains(combo) ? villain.weights[combo] : 0;
+					double win = beaten - beatenByCard[c0] - beatenByCard[c1];
+					double tie = tied - tiedByCard[c0] - tiedByCard[c1] + same;
+					shares[combo] += win + tie / 2;
+					totals[combo] += live - liveByCard[c0] - liveByCard[c1] + same;
+				}
+			}
+		}
+
+		// scores the combos of a range that are live on the board and sorts them by score,
+		// packed as score << 11 | combo; returns how many there are
+		private int sort(Range range, int[] list, long[] sorted, long boardKey, long boardMask) {
+			boolean river = Long.bitCount(boardMask) == 5;
+			int n = 0;
+			for (int combo : list) {
+				if ((COMBO_MASKS[combo] & boardMask) != 0) continue;
+				int score = !river ? BitboardEvaluator.score(boardMask | COMBO_MASKS[combo])
+						: SevenCardLookup.score(boardKey + SevenCardLookup.cardKey(FIRST_CARDS[combo])
+								+ SevenCardLookup.cardKey(SECOND_CARDS[combo]), boardMask | COMBO_MASKS[combo]);
+				sorted[n++] = (long) score << 11 | combo;
+			}
+			Arrays.sort(sorted, 0, n);
+			return n;
+		}
+
+		private static void addByCard(double[] byCard, int combo, double weight) {
+			byCard[FIRST_CARDS[combo]] += weight;
+			byCard[SECOND_CARDS[combo]] += weight;
+		}
+	}
+
+	// adds one item of range notation with a weight
+	private void addItem(String item, float weight) {
+		if (item.equalsIgnoreCase("any")) {
+			for (int combo = 0; combo < COMBOS; combo++) set(combo, weight);
+			return;
+		}
+
+		// a single combo such as AhKh
+		if (item.length() == 4 && SUITS.indexOf(Character.toLowerCase(item.charAt(1))) >= 0
+				&& SUITS.indexOf(Character.toLowerCase(item.charAt(3))) >= 0) {
+			int c0 = Card.of(rank(item, item.charAt(0)), suit(item, item.charAt(1)));
+			int c1 = Card.of(rank(item, item.charAt(2)), suit(item, item.charAt(3)));
+			if (c0 == c1) throw new IllegalArgumentException("a combo needs two different cards: " + item);
+			set(PreflopEquity.comboIndex(c0, c1), weight);
+			return;
+		}
+
+		int dash = item.indexOf('-');
+		if (dash >= 0) {
+			int[] from = hand(item, item.substring(0, dash).trim());
+			int[] to = hand(item, item.substring(dash + 1).trim());
+			boolean pairs = from[0] == from[1];
+			if (pairs != (to[0] == to[1]) || from[2] != to[2] || (!pairs && from[0] != to[0]))
+				throw new IllegalArgumentException("cannot make a span of " + item);
+			// TT-77 steps both ranks, A5s-A2s steps the kicker
+			int high = Math.max(from[1], to[1]);
+			int low = Math.min(from[1], to[1]);
+			for (int r = low; r <= high; r++) addHands(pairs ? r : from[0], r, from[2], weight);
+			return;
+		}
+
+		boolean plus = item.endsWith("+");
+		int[] hand = hand(item, plus ? item.substring(0, item.length() - 1) : item);
+		if (!plus) {
+			addHands(hand[0], hand[1], hand[2], weight);
+		} else if (hand[0] == hand[1]) {
+			// TT+ is every pair from tens up
+			for (int r = hand[0]; r <= 14; r++) addHands(r, r, hand[2], weight);
+		} else {
+			// ATs+ raises the kicker up to one below the top card
+			for (int r = hand[1]; r < hand[0]; r++) addHands(hand[0], r, hand[2], weight);
+		}
+	}
+
+	// parses AK / AKs / AKo / TT into {high rank, low rank, 's' / 'o' / 0}
+	private static int[] hand(String item, String hand) {
+		if (hand.length() < 2 || hand.length() > 3) throw new IllegalArgumentException("cannot parse " + item);
+		int r0 = rank(item, hand.charAt(0));
+		int r1 = rank(item, hand.charAt(1));
+		int kind = hand.length() == 3 ? Character.toLowerCase(hand.charAt(2)) : 0;
+		if (kind != 0 && kind != 's' && kind != 'o') throw new IllegalArgumentException("cannot parse " + item);
+		if (r0 == r1 && kind != 0) throw new IllegalArgumentException("a pair cannot be suited or offsuit: " + item);
+		return new int[] {Math.max(r0, r1), Math.min(r0, r1), kind};
+	}
+
+	// every combo of two ranks: suited ('s'), offsuit ('o') or both (0)
+	private void addHands(int high, int low, int kind, float weight) {
+		for (int s0 = 0; s0 < 4; s0++) {
+			for (int s1 = 0; s1 < 4; s1++) {
+				if (high == low && s1 <= s0) continue;
+				if (high != low && (kind == 's' && s0 != s1 || kind == 'o' && s0 == s1)) continue;
+				set(PreflopEquity.comboIndex(Card.of(high, s0), Card.of(low, s1)), weight);
+			}
+		}
+	}
+
+	private static int rank(String item, char c) {
+		int rank = RANKS.indexOf(Character.toUpperCase(c));
+		if (rank < 0) throw new IllegalArgumentException("bad rank '" + c + "' in " + item);
+		return rank + 2;
+	}
+
+	private static int suit(String item, char c) {
+		int suit = SUITS.indexOf(Character.toLowerCase(c));
+		if (suit < 0) throw new IllegalArgumentException("bad suit '" + c + "' in " + item);
+		// the same order as Card: hearts, clubs, diamonds, spades
+		return suit;
+	}
+}
@@ -0,0 +1,178 @@
+package poker;
+
+/***
+ * allocation-free evaluation with reusable scratch state
+ *
+ * an evaluator holds fixed scratch arrays and writes results into a
+ * caller-supplied HandResult, so evaluating a hand allocates nothing.
+ * hands of distinct cards go through BitboardEvaluator; hands with repeated
+ * cards (shoe games) are counted into the scratch arrays instead. scores
+ * are the same as the reference logic.
+ * an evaluator is not thread-safe: keep one per thread (see forCurrentThread())
+ */
+public final class ScratchEvaluator {
+
+	private static final ThreadLocal<ScratchEvaluator> PER_THREAD = new ThreadLocal<ScratchEvaluator>() {
+		protected ScratchEvaluator initialValue() {
+			return new ScratchEvaluator();
+		}
+	};
+
+	// number of cards of each rank (0 = deuce), of each suit, and of each suit and rank (suit * 13 + rank)
+	private final int[] rankCounts = new int[13];
+	private final int[] suitCounts = new int[4];
+	private final int[] suitRankCounts = new int[52];
+
+	// rank mask of each suit
+	private final int[] suitMasks = new int[4];
+
+	// the evaluator of the calling thread
+	public static ScratchEvaluator forCurrentThread() {
+		return PER_THREAD.get();
+	}
+
+	// evaluates the first length cards of an array into a result
+	public void evaluate(int[] cards, int length, HandResult result) {
+		result.set(score(cards, length));
+	}
+
+	// evaluates a set of distinct cards packed into a mask (see Card) into a result
+	public void evaluate(long mask, HandResult result) {
+		result.set(BitboardEvaluator.score(mask));
+	}
+
+	// scores the first length cards of an array (see EvaluationInfo.getScore())
+	public int score(int[] cards, int length) {
+		return score(cards, 0, length);
+	}
+
+	// scores the length cards starting at offset, for hands packed back to back in one array
+	public int score(int[] cards, int offset, int length) {
+		long mask = 0L;
+		for (int i = offset; i < offset + length; i++) mask |= Card.bit(cards[i]);
+
+		if (Long.bitCount(mask) == length) return BitboardEvaluator.score(mask);
+		return scoreRepeated(cards, offset, length);
+	}
+
+	// scores a hand that repeats cards by counting its cards
+	private int scoreRepeated(int[] cards, int offset, int length) {
+		return scoreCounted(cards, offset, length, false);
+	}
+
+	// scores any hand by counting its cards, with five of a kind and flush five
+	// when multiDeck is set (see MultiDeckEvaluator)
+	int scoreCounted(int[] cards, int offset, int length, boolean multiDeck) {
+		for (int i = offset; i < offset + length; i++) {
+			int rank = cards[i] >> 2;
+			int suit = cards[i] & 3;
+			rankCounts[rank]++;
+			suitCounts[suit]++;
+			suitRankCounts[suit * 13 + rank]++;
+			suitMasks[suit] |= 1 << rank;
+		}
+
+		int score = multiDeck ? scoreFiveOfAKind() : 0;
+		if (score == 0) score = scoreCounts();
+
+		// leave the scratch arrays clean for the next hand
+		for (int i = offset; i < offset + length; i++) {
+			int rank = cards[i] >> 2;
+			int suit = cards[i] & 3;
+			rankCounts[rank] = 0;
+			suitCounts[suit] = 0;
+			suitRankCounts[suit * 13 + rank] = 0;
+			suitMasks[suit] = 0;
+		}
+		return score;
+	}
+
+	// flush five or five of a kind score, or 0 if there is neither
+	private int scoreFiveOfAKind() {
+		int fives = 0;
+		for (int rank = 12; rank >= 0; rank--) {
+			for (int suit = 0; suit < 4; suit++) {
+				if (suitRankCounts[suit * 13 + rank] >= 5) return MultiDeckEvaluator.FLUSH_FIVE | ((rank + 2) << 16);
+			}
+			if (fives == 0 && rankCounts[rank] >= 5) fives = MultiDeckEvaluator.FIVE_OF_A_KIND | ((rank + 2) << 16);
+		}
+		return fives;
+	}
+
+	// same decision order as BitboardEvaluator, with counts standing in for the folded suit lanes
+	private int scoreCounts() {
+		int flush = 0;
+		for (int suit = 0; suit < 4; suit++) {
+			if (suitCounts[suit] >= 5) flush = Math.max(flush, flushScore(suit, suitMasks[suit]));
+		}
+		if (flush >= BitboardEvaluator.STRAIGHT_FLUSH) return flush;
+
+		int ones = 0;
+		int twos = 0;
+		int threes = 0;
+		int fours = 0;
+		for (int rank = 0; rank < 13; rank++) {
+			int count = rankCounts[rank];
+			if (count >= 1) ones |= 1 << rank;
+			if (count >= 2) twos |= 1 << rank;
+			if (count >= 3) threes |= 1 << rank;
+			if (count >= 4) fours |= 1 << rank;
+		}
+
+		if (fours != 0) {
+			int quads = Integer.highestOneBit(fours);
+			return BitboardEvaluator.FOUR_OF_A_KIND | (BitboardEvaluator.rank(quads) << 16)
+					| (BitboardEvaluator.topRanks(ones & ~quads, 1) << 12);
+		}
+
+		if (threes != 0) {
+			int trips = Integer.highestOneBit(threes);
+			int pair = Integer.highestOneBit(twos & ~trips);
+			if (pair != 0) {
+				return BitboardEvaluator.FULL_HOUSE | (BitboardEvaluator.rank(trips) << 16)
+						| (BitboardEvaluator.rank(pair) << 12);
+			}
+		}
+
+		if (flush != 0) return flush;
+
+		int straight = BitboardEvaluator.straightHigh(ones);
+		if (straight != 0) return BitboardEvaluator.STRAIGHT | (straight << 16);
+
+		if (threes != 0) {
+			int trips = Integer.highestOneBit(threes);
+			return BitboardEvaluator.THREE_OF_A_KIND | (BitboardEvaluator.rank(trips) << 16)
+					| (BitboardEvaluator.topRanks(ones & ~trips, 2) << 8);
+		}
+
+		if (twos != 0) {
+			int high = Integer.highestOneBit(twos);
+			int low = Integer.highestOneBit(twos & ~high);
+			if (low != 0) {
+				return BitboardEvaluator.TWO_PAIR | (BitboardEvaluator.rank(high) << 16)
+						| (BitboardEvaluator.rank(low) << 12)
+						| (BitboardEvaluator.topRanks(ones & ~(high | low), 1) << 8);
+			}
+			return BitboardEvaluator.ONE_PAIR | (BitboardEvaluator.rank(high) << 16)
+					| (BitboardEvaluator.topRanks(ones & ~high, 3) << 4);
+		}
+
+		return BitboardEvaluator.HIGH_CARD | BitboardEvaluator.topRanks(ones, 5);
+	}
+
+	// straight flush or flush score for a suit with at least five cards;
+	// a flush plays its five highest cards, repeats included
+	private int flushScore(int suit, int suitMask) {
+		int high = BitboardEvaluator.straightHigh(suitMask);
+		if (high == 14) return BitboardEvaluator.ROYAL_FLUSH | (14 << 16);
+		if (high != 0) return BitboardEvaluator.STRAIGHT_FLUSH | (high << 16);
+
+		int packed = 0;
+		int taken = 0;
+		for (int rank = 12; rank >= 0 && taken < 5; rank--) {
+			for (int n = suitRankCounts[suit * 13 + rank]; n > 0 && taken < 5; n--, taken++)
+				packed = (packed << 4) | (rank + 2);
+		}
+		return BitboardEvaluator.FLUSH | packed;
+	}
+}
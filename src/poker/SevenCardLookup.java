@@ -0,0 +1,194 @@
+package poker;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/***
+ * table driven evaluation of seven card (Texas Hold'em) hands
+ *
+ * each card has a precomputed key that holds an additive rank key and a
+ * count for its suit. summing the seven keys gives, in one pass:
+ * - the number of cards of each suit, which tells whether there is a flush
+ * - a rank sum that is unique for every multiset of seven ranks
+ * a flush is looked up by the rank mask of its suit, anything else by the
+ * rank sum, so a hand costs seven key loads plus one table load.
+ * the tables hold FiveCardLookup equivalence classes and are generated from
+ * the reference logic, so the scores always agree with it. other hand sizes
+ * (and hands with repeated cards) fall back to FiveCardLookup or the
+ * reference engine.
+ * generating the tables takes a moment; if the system property
+ * poker.tables names a table file (see TableFile) they are memory-mapped
+ * from it instead
+ */
+public final class SevenCardLookup implements EvaluationEngine {
+
+	public static final SevenCardLookup INSTANCE = new SevenCardLookup();
+
+	// additive rank keys: every multiset of seven ranks (at most four of each)
+	// has a different sum, the largest being 7,825,759
+	private static final int[] RANK_KEYS = {
+		0, 1, 5, 22, 98, 453, 2031, 8698, 22854, 83661, 262349, 636345, 1479181
+	};
+
+	private static final int MAX_RANK_SUM = 4 * RANK_KEYS[12] + 3 * RANK_KEYS[11];
+
+	// a key is the rank key shifted above four 4-bit suit counters
+	private static final int SUIT_BITS = 16;
+	private static final long[] CARD_KEYS = new long[Card.NUM_CARDS];
+
+	// adding 3 to each suit counter sets its top bit once it reaches five cards
+	private static final int FLUSH_CHECK = 0x3333;
+	private static final int FLUSH_BITS = 0x8888;
+
+	// class of a non-flush hand by rank sum, and of a flush by its 13-bit rank mask;
+	// heap buffers when generated, mapped ones when loaded from a table file
+	private static final CharBuffer RANKS;
+	private static final CharBuffer FLUSHES;
+
+	// marks rank sums that are not a seven card hand
+	private static final char NONE = 0xFFFF;
+
+	// version of the tables in a table file, bump it when their layout or contents change
+	static final int TABLES_VERSION = 1;
+
+	// system property naming the table file to load
+	public static final String TABLES_PROPERTY = "poker.tables";
+
+	static {
+		for (int card = 0; card < Card.NUM_CARDS; card++)
+			CARD_KEYS[card] = ((long) RANK_KEYS[Card.rank(card) - 2] << SUIT_BITS) | (1L << (Card.suit(card) * 4));
+
+		String path = System.getProperty(TABLES_PROPERTY);
+		CharBuffer[] tables = path != null ? load(new File(path)) : generate();
+		RANKS = tables[0];
+		FLUSHES = tables[1];
+	}
+
+	private SevenCardLookup() {
+	}
+
+	public int score(int[] cards) {
+		if (cards.length != 7) return FiveCardLookup.INSTANCE.score(cards);
+
+		long key = 0L;
+		long mask = 0L;
+		for (int card : cards) {
+			key += CARD_KEYS[card];
+			mask |= Card.bit(card);
+		}
+
+		// the tables only cover seven distinct cards
+		if (Long.bitCount(mask) != 7) return PokerHandEvaluator.REFERENCE.score(cards);
+
+		return score(key, mask);
+	}
+
+	// key of one card; the key of a hand is the sum of the keys of its cards
+	public static long cardKey(int card) {
+		return CARD_KEYS[card];
+	}
+
+	// scores seven distinct cards from the sum of their keys and their mask
+	// (see Card), so callers can build both up a card at a time
+	public static int score(long key, long mask) {
+		int flush = ((int) key + FLUSH_CHECK) & FLUSH_BITS;
+
+		// with seven cards a flush beats anything the other cards can make
+		if (flush != 0) {
+			int suit = Integer.numberOfTrailingZeros(flush) >> 2;
+			return FiveCardLookup.classScore(FLUSHES.get(Card.suitMask(mask, suit)));
+		}
+		return FiveCardLookup.classScore(RANKS.get((int) (key >>> SUIT_BITS)));
+	}
+
+	// same, with the mask given as its four suit masks
+	static int score(long key, int s0, int s1, int s2, int s3) {
+		int flush = ((int) key + FLUSH_CHECK) & FLUSH_BITS;
+		if (flush != 0) {
+			int suit = Integer.numberOfTrailingZeros(flush) >> 2;
+			return FiveCardLookup.classScore(FLUSHES.get(suit == 0 ? s0 : suit == 1 ? s1 : suit == 2 ? s2 : s3));
+		}
+		return FiveCardLookup.classScore(RANKS.get((int) (key >>> SUIT_BITS)));
+	}
+
+	// writes the tables to a table file, to be loaded with -Dpoker.tables=<file>
+	public static void saveTables(File file) throws IOException {
+		TableFile.write(file, TABLES_VERSION, RANKS, FLUSHES, classScores());
+	}
+
+	// the tables in use: RANKS, then FLUSHES
+	static CharBuffer[] tables() {
+		return new CharBuffer[] { RANKS, FLUSHES };
+	}
+
+	// maps the tables from a table file; the class scores stored with them must
+	// match FiveCardLookup, or the class ids in the tables would mean other hands
+	static CharBuffer[] load(File file) {
+		try {
+			Buffer[] tables = TableFile.map(file, TABLES_VERSION);
+			if (tables.length != 3 || tables[0].limit() != MAX_RANK_SUM + 1 || tables[1].limit() != 8192
+					|| !classScores().equals(tables[2]))
+				throw new IOException(file + " does not hold the seven card tables; regenerate it");
+			return new CharBuffer[] { (CharBuffer) tables[0], (CharBuffer) tables[1] };
+		} catch (IOException e) {
+			throw new IllegalStateException("cannot load " + TABLES_PROPERTY + "=" + file, e);
+		}
+	}
+
+	private static IntBuffer classScores() {
+		IntBuffer scores = IntBuffer.allocate(FiveCardLookup.NUM_CLASSES);
+		for (int cls = 0; cls < FiveCardLookup.NUM_CLASSES; cls++) scores.put(cls, FiveCardLookup.classScore(cls));
+		return scores;
+	}
+
+	// fills the tables by scoring one representative hand per entry with the reference engine
+	private static CharBuffer[] generate() {
+		char[] ranks = new char[MAX_RANK_SUM + 1];
+		char[] flushes = new char[8192];
+		int[] cards = new int[7];
+
+		// flushes of five, six and seven cards of one suit
+		for (int mask = 0; mask < 8192; mask++) {
+			int bits = Integer.bitCount(mask);
+			if (bits < 5) continue;
+
+			int[] flush = new int[bits];
+			int n = 0;
+			for (int r = 0; r < 13; r++) {
+				if ((mask & (1 << r)) != 0) flush[n++] = Card.of(r + 2, Card.HEARTS);
+			}
+			flushes[mask] = (char) FiveCardLookup.classOf(PokerHandEvaluator.REFERENCE.score(flush));
+		}
+
+		// every multiset of seven ranks; dealing the sorted ranks round robin over
+		// the suits never repeats a card and never makes a flush
+		Arrays.fill(ranks, NONE);
+		fillRanks(ranks, new int[7], 0, 0, cards);
+		return new CharBuffer[] { CharBuffer.wrap(ranks), CharBuffer.wrap(flushes) };
+	}
+
+	// recursively enumerates non-decreasing rank sequences with at most four of a rank
+	private static void fillRanks(char[] table, int[] ranks, int depth, int minRank, int[] cards) {
+		if (depth == ranks.length) {
+			int sum = 0;
+			for (int i = 0; i < ranks.length; i++) {
+				cards[i] = Card.of(ranks[i] + 2, i & 3);
+				sum += RANK_KEYS[ranks[i]];
+			}
+			if (table[sum] != NONE)
+				throw new IllegalStateException("rank keys collide at " + sum);
+			table[sum] = (char) FiveCardLookup.classOf(PokerHandEvaluator.REFERENCE.score(cards));
+			return;
+		}
+
+		for (int r = minRank; r < 13; r++) {
+			if (depth >= 4 && ranks[depth - 4] == r) continue;
+			ranks[depth] = r;
+			fillRanks(table, ranks, depth + 1, r, cards);
+		}
+	}
+}
@@ -0,0 +1,93 @@
+package poker;
+
+/***
+ * picks the winners or the top hands out of precomputed scores
+ *
+ * both selections take a single pass over the scores instead of sorting
+ * them: winners() keeps the best score seen so far and every index that
+ * ties it, topK() keeps the k best hands in a small min-heap. results are
+ * indices into the scores, best first; equal scores keep their input order
+ */
+public final class Showdown {
+
+	private Showdown() {
+	}
+
+	// indices of every hand that ties for the best score, in input order
+	// (more than one means the pot is split)
+	public static int[] winners(int[] scores) {
+		if (scores.length == 0) return new int[0];
+
+		int best = scores[0];
+		int numBest = 1;
+		int[] indices = new int[scores.length];
+		for (int i = 1; i < scores.length; i++) {
+			if (scores[i] > best) {
+				best = scores[i];
+				numBest = 0;
+			} else if (scores[i] < best) {
+				continue;
+			}
+			indices[numBest++] = i;
+		}
+
+		int[] winners = new int[numBest];
+		System.arraycopy(indices, 0, winners, 0, numBest);
+		return winners;
+	}
+
+	// indices of the k best hands (or all of them if there are fewer), best first;
+	// among equal scores the earlier hand ranks higher, also at the cut-off
+	public static int[] topK(int[] scores, int k) {
+		if (k < 0) throw new IllegalArgumentException("k must not be negative: " + k);
+		k = Math.min(k, scores.length);
+		if (k == 0) return new int[0];
+
+		// heap[0] is the worst hand kept; a key is the score above the complemented
+		// index, so for equal scores an earlier hand has the larger key
+		long[] heap = new long[k];
+		int size = 0;
+		for (int i = 0; i < scores.length; i++) {
+			long key = ((long) scores[i] << 32) | (~i & 0xFFFFFFFFL);
+			if (size < k) {
+				siftUp(heap, size++, key);
+			} else if (key > heap[0]) {
+				siftDown(heap, size, key);
+			}
+		}
+
+		// take the worst hand off the heap k times, filling the result from the back
+		int[] top = new int[k];
+		while (size > 0) {
+			long worst = heap[0];
+			size--;
+			if (size > 0) siftDown(heap, size, heap[size]);
+			top[size] = ~(int) worst;
+		}
+		return top;
+	}
+
+	// places key at the end of a heap of size - 1 keys and moves it up
+	private static void siftUp(long[] heap, int i, long key) {
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (heap[parent] <= key) break;
+			heap[i] = heap[parent];
+			i = parent;
+		}
+		heap[i] = key;
+	}
+
+	// replaces the root of a heap of size keys with key and moves it down
+	private static void siftDown(long[] heap, int size, long key) {
+		int i = 0;
+		int child;
+		while ((child = 2 * i + 1) < size) {
+			if (child + 1 < size && heap[child + 1] < heap[child]) child++;
+			if (key <= heap[child]) break;
+			heap[i] = heap[child];
+			i = child;
+		}
+		heap[i] = key;
+	}
+}
@@ -0,0 +1,263 @@
+package poker;
+
+import java.util.Arrays;
+import org.json.JSONArray;
+
+/***
+ * canonical forms of hands under suit relabeling
+ *
+ * scores and equities do not change when the four suits (the Card lanes,
+ * H/C/D/S) are renamed, so a hand only needs to be worked out once per
+ * class of hands that differ by a relabeling. a hand is given as rounds,
+ * one card mask per round (hole cards, flop, turn ...): suits keep their
+ * pattern across rounds, so AhKh on a 2h flop is not the same class as
+ * AhKh on a 2c flop.
+ *
+ * the canonical form orders the suits by their rank masks, round by round,
+ * largest first, and the weight of a class is the number of raw hands in
+ * it (24 divided by the relabelings that leave it unchanged). dense
+ * indexes are kept for the 169 preflop classes (a 13 x 13 grid: pairs on
+ * the diagonal, suited hands above it, offsuit below) and the 1,755 flops,
+ * each with its weight and a representative hand. forEachClass() walks
+ * the canonical classes of any round sizes directly, without visiting the
+ * raw hands, for enumerations that can be weighted by class
+ */
+public final class SuitIsomorphism {
+
+	public static final int PREFLOP_CLASSES = 169;
+	public static final int FLOP_CLASSES = 1755;
+
+	// 4! relabelings of the suits
+	private static final int[] FACTORIALS = {1, 1, 2, 6, 24};
+
+	private static final String RANK_CHARS = "23456789TJQKA";
+
+	// canonical flop masks in ascending order; a flop's index is its position
+	private static final long[] FLOPS = new long[FLOP_CLASSES];
+	private static final int[] FLOP_WEIGHTS = new int[FLOP_CLASSES];
+
+	// rank masks (13 bits) by number of ranks
+	private static final int[][] RANK_MASKS = new int[14][];
+
+	static {
+		int[] counts = new int[14];
+		for (int mask = 0; mask < 8192; mask++) counts[Integer.bitCount(mask)]++;
+		for (int n = 0; n <= 13; n++) RANK_MASKS[n] = new int[counts[n]];
+		Arrays.fill(counts, 0);
+		// descending, so classes come out largest first
+		for (int mask = 8191; mask >= 0; mask--) {
+			int n = Integer.bitCount(mask);
+			RANK_MASKS[n][counts[n]++] = mask;
+		}
+
+		int n = 0;
+		for (int a = 0; a < Card.NUM_CARDS; a++) {
+			for (int b = a + 1; b < Card.NUM_CARDS; b++) {
+				for (int c = b + 1; c < Card.NUM_CARDS; c++) {
+					long flop = Card.bit(a) | Card.bit(b) | Card.bit(c);
+					if (isCanonical(flop)) FLOPS[n++] = flop;
+				}
+			}
+		}
+		Arrays.sort(FLOPS);
+		for (int i = 0; i < FLOP_CLASSES; i++) FLOP_WEIGHTS[i] = weight(FLOPS[i]);
+	}
+
+	// called once per canonical class by forEachClass()
+	public interface ClassVisitor {
+		// rounds are the canonical masks of the class (reused between calls)
+		void visit(long[] rounds, int weight);
+	}
+
+	private SuitIsomorphism() {
+	}
+
+	// the canonical form of a hand given as one card mask per round
+	public static long[] canonical(long... rounds) {
+		int[] order = suitOrder(rounds);
+		long[] canonical = new long[rounds.length];
+		for (int r = 0; r < rounds.length; r++) {
+			for (int s = 0; s < 4; s++) canonical[r] |= (long) Card.suitMask(rounds[r], order[s]) << (13 * s);
+		}
+		return canonical;
+	}
+
+	// whether a hand is already in canonical form
+	public static boolean isCanonical(long... rounds) {
+		for (int s = 1; s < 4; s++) {
+			if (compareSuits(rounds, s - 1, s) < 0) return false;
+		}
+		return true;
+	}
+
+	// the number of raw hands in the class of a hand
+	public static int weight(long... rounds) {
+		int[] order = suitOrder(rounds);
+		int weight = FACTORIALS[4];
+		int run = 1;
+		for (int s = 1; s < 4; s++) {
+			if (compareSuits(rounds, order[s - 1], order[s]) == 0) {
+				run++;
+			} else {
+				weight /= FACTORIALS[run];
+				run = 1;
+			}
+		}
+		return weight / FACTORIALS[run];
+	}
+
+	// preflop class (0 to 168) of two hole cards: row * 13 + column of the grid,
+	// where rows and columns are rank - 2, suited hands have row > column
+	public static int preflopIndex(int c0, int c1) {
+		int r0 = Card.rank(c0) - 2;
+		int r1 = Card.rank(c1) - 2;
+		int high = Math.max(r0, r1);
+		int low = Math.min(r0, r1);
+		return Card.suit(c0) == Card.suit(c1) ? high * 13 + low : low * 13 + high;
+	}
+
+	public static int preflopIndex(JSONArray hole) {
+		int[] cards = Card.parse(hole);
+		if (cards.length != 2) throw new IllegalArgumentException("two hole cards are needed, got " + cards.length);
+		return preflopIndex(cards[0], cards[1]);
+	}
+
+	// raw hands in a preflop class: 6 for a pair, 4 suited, 12 offsuit
+	public static int preflopWeight(int index) {
+		int row = index / 13;
+		int column = index % 13;
+		return row == column ? 6 : row > column ? 4 : 12;
+	}
+
+	// a pair of hole cards in a preflop class, high card first, suits in canonical order
+	public static int[] preflopHand(int index) {
+		int row = index / 13;
+		int column = index % 13;
+		int high = Math.max(row, column) + 2;
+		int low = Math.min(row, column) + 2;
+		return new int[] {Card.of(high, 0), Card.of(low, row > column ? 0 : 1)};
+	}
+
+	// the usual name of a preflop class, e.g. "AA", "AKs", "T9o"
+	public static String preflopName(int index) {
+		int row = index / 13;
+		int column = index % 13;
+		String name = "" + RANK_CHARS.charAt(Math.max(row, column)) + RANK_CHARS.charAt(Math.min(row, column));
+		return row == column ? name : name + (row > column ? "s" : "o");
+	}
+
+	// flop class (0 to 1754) of three board cards given as a mask
+	public static int flopIndex(long flop) {
+		if (Long.bitCount(flop) != 3) throw new IllegalArgumentException("a flop has three cards");
+		return Arrays.binarySearch(FLOPS, canonical(flop)[0]);
+	}
+
+	public static int flopIndex(JSONArray flop) {
+		return flopIndex(Card.mask(Card.parse(flop)));
+	}
+
+	// raw flops in a flop class (the weights add up to 22,100)
+	public static int flopWeight(int index) {
+		return FLOP_WEIGHTS[index];
+	}
+
+	// the canonical cards of a flop class
+	public static long flopBoard(int index) {
+		return FLOPS[index];
+	}
+
+	// visits the canonical form of every class of hands with the given cards per round,
+	// and returns the number of classes
+	public static long forEachClass(int[] roundSizes, ClassVisitor visitor) {
+		int total = 0;
+		for (int size : roundSizes) total += size;
+		if (total > Card.NUM_CARDS) throw new IllegalArgumentException(total + " cards do not fit in a deck");
+
+		int[][] suitMasks = new int[4][roundSizes.length];
+		return visitSuit(roundSizes.clone(), suitMasks, 0, new long[roundSizes.length], visitor);
+	}
+
+	// chooses the rank masks of suit s, no larger than suit s - 1's, then moves on to the next suit
+	private static long visitSuit(int[] remaining, int[][] suitMasks, int s, long[] rounds, ClassVisitor visitor) {
+		if (s == 4) {
+			for (int r = 0; r < rounds.length; r++) {
+				rounds[r] = 0L;
+				for (int t = 0; t < 4; t++) rounds[r] |= (long) suitMasks[t][r] << (13 * t);
+			}
+			// the suits are already in order, so equal ones are adjacent
+			int weight = FACTORIALS[4];
+			int run = 1;
+			for (int t = 1; t < 4; t++) {
+				if (Arrays.equals(suitMasks[t - 1], suitMasks[t])) {
+					run++;
+				} else {
+					weight /= FACTORIALS[run];
+					run = 1;
+				}
+			}
+			visitor.visit(rounds, weight / FACTORIALS[run]);
+			return 1;
+		}
+		return visitRound(remaining, suitMasks, s, 0, 0, s > 0, rounds, visitor);
+	}
+
+	// chooses suit s's rank mask in round r from ranks not yet used in the suit; tied is
+	// whether every earlier round equals suit s - 1's, so this one may not be larger
+	private static long visitRound(int[] remaining, int[][] suitMasks, int s, int r, int used, boolean tied,
+			long[] rounds, ClassVisitor visitor) {
+		if (r == remaining.length) return visitSuit(remaining, suitMasks, s + 1, rounds, visitor);
+
+		long classes = 0;
+		// the last suit takes what is left
+		int min = s == 3 ? remaining[r] : 0;
+		for (int n = remaining[r]; n >= min; n--) {
+			int[] masks = RANK_MASKS[n];
+			// masks are in descending order, so skip straight past the ones that are too large
+			for (int i = tied ? firstAtMost(masks, suitMasks[s - 1][r]) : 0; i < masks.length; i++) {
+				int mask = masks[i];
+				if ((mask & used) != 0) continue;
+
+				suitMasks[s][r] = mask;
+				remaining[r] -= n;
+				classes += visitRound(remaining, suitMasks, s, r + 1, used | mask,
+						tied && mask == suitMasks[s - 1][r], rounds, visitor);
+				remaining[r] += n;
+			}
+		}
+		return classes;
+	}
+
+	// index of the first mask no larger than max in a descending array
+	private static int firstAtMost(int[] masks, int max) {
+		int low = 0;
+		int high = masks.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (masks[mid] > max) low = mid + 1;
+			else high = mid;
+		}
+		return low;
+	}
+
+	// suits ordered by their rank masks, round by round, largest first
+	private static int[] suitOrder(long[] rounds) {
+		int[] order = {0, 1, 2, 3};
+		for (int i = 1; i < 4; i++) {
+			for (int j = i; j > 0 && compareSuits(rounds, order[j - 1], order[j]) < 0; j--) {
+				int t = order[j];
+				order[j] = order[j - 1];
+				order[j - 1] = t;
+			}
+		}
+		return order;
+	}
+
+	// compares two suits by their rank masks in each round, first round first
+	private static int compareSuits(long[] rounds, int a, int b) {
+		for (long round : rounds) {
+			int c = Integer.compare(Card.suitMask(round, a), Card.suitMask(round, b));
+			if (c != 0) return c;
+		}
+		return 0;
+	}
+}
@@ -0,0 +1,184 @@
+package poker;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/***
+ * versioned, checksummed binary files of lookup tables
+ *
+ * a table file holds char and int tables and is memory-mapped read-only
+ * when loaded, so startup does not regenerate or copy anything and every
+ * JVM on a host shares the same pages through the OS page cache.
+ *
+ * layout (little endian): magic, format version, tables version, table
+ * count, then a (type, length) pair per table, then the tables one after
+ * the other (each padded to 8 bytes), then a CRC32 of everything before it.
+ * the tables version belongs to whoever owns the tables and is bumped
+ * whenever their layout or contents change. mapping only checks the
+ * header; verify() (or -Dpoker.verifyTables=true) checks the checksum.
+ * a table file is limited to 2 GB
+ *
+ * to write the evaluator tables: java -cp bin poker.TableFile tables.bin
+ * to use them: java -Dpoker.tables=tables.bin ...
+ */
+public final class TableFile {
+
+	// "PHEV"
+	static final int MAGIC = 0x50484556;
+	static final int FORMAT_VERSION = 1;
+
+	// set to true to check the checksum of every table file when it is mapped
+	public static final String VERIFY_PROPERTY = "poker.verifyTables";
+
+	// a Java array or buffer holds at most Integer.MAX_VALUE bytes
+	private static final long MAX_BYTES = Integer.MAX_VALUE;
+
+	private static final int CHAR_TABLE = 1;
+	private static final int INT_TABLE = 2;
+
+	private TableFile() {
+	}
+
+	// writes the evaluator tables to the file given as the only argument
+	public static void main(String[] args) throws IOException {
+		if (args.length != 1) {
+			System.err.println("usage: java poker.TableFile <file>");
+			System.exit(1);
+		}
+
+		File file = new File(args[0]);
+		SevenCardLookup.saveTables(file);
+		verify(file);
+		System.out.println("Wrote " + file.length() + " bytes to " + file);
+	}
+
+	// writes char and int tables (CharBuffers and IntBuffers) to a file
+	static void write(File file, int tablesVersion, Buffer... tables) throws IOException {
+		int headerSize = (int) align(16 + 8 * tables.length);
+		long size = headerSize;
+		for (Buffer table : tables) size += align(bytes(table));
+		// the file is built in one array and mapped as one buffer, both limited to 2 GB
+		if (size + 8 > MAX_BYTES)
+			throw new IOException("cannot write " + file + ": the tables take " + (size + 8)
+					+ " bytes, and a table file must be under 2 GB");
+
+		ByteBuffer out = ByteBuffer.allocate((int) size + 8).order(ByteOrder.LITTLE_ENDIAN);
+		out.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(tablesVersion).putInt(tables.length);
+		for (Buffer table : tables) {
+			out.putInt(table instanceof CharBuffer ? CHAR_TABLE : INT_TABLE);
+			out.putInt(table.limit());
+		}
+
+		out.position(headerSize);
+		for (Buffer table : tables) {
+			int start = out.position();
+			if (table instanceof CharBuffer) {
+				CharBuffer chars = (CharBuffer) table;
+				for (int i = 0; i < chars.limit(); i++) out.putChar(chars.get(i));
+			} else {
+				IntBuffer ints = (IntBuffer) table;
+				for (int i = 0; i < ints.limit(); i++) out.putInt(ints.get(i));
+			}
+			out.position(start + (int) align(bytes(table)));
+		}
+
+		CRC32 crc = new CRC32();
+		crc.update(out.array(), 0, (int) size);
+		out.putLong((int) size, crc.getValue());
+
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.setLength(0);
+			raf.write(out.array());
+		} finally {
+			raf.close();
+		}
+	}
+
+	// maps a table file read-only and returns a view of each table
+	// (a CharBuffer or an IntBuffer) in the order they were written.
+	// only the header is checked, so mapping does not read the tables in
+	static Buffer[] map(File file, int tablesVersion) throws IOException {
+		ByteBuffer in = mapFile(file);
+		if (in.limit() < 24 || in.getInt(0) != MAGIC)
+			throw new IOException(file + " is not a table file");
+		if (in.getInt(4) != FORMAT_VERSION || in.getInt(8) != tablesVersion)
+			throw new IOException(file + " has version " + in.getInt(4) + "." + in.getInt(8)
+					+ ", expected " + FORMAT_VERSION + "." + tablesVersion + "; regenerate it");
+		if (Boolean.getBoolean(VERIFY_PROPERTY)) checkCrc(file, in);
+
+		int count = in.getInt(12);
+		if (count < 0 || 16 + 8L * count > in.limit() - 8)
+			throw new IOException(file + " has a damaged header (" + count + " tables); regenerate it");
+		Buffer[] tables = new Buffer[count];
+		long position = align(16 + 8L * count);
+		for (int t = 0; t < count; t++) {
+			int type = in.getInt(16 + 8 * t);
+			int length = in.getInt(20 + 8 * t);
+			if ((type != CHAR_TABLE && type != INT_TABLE) || length < 0)
+				throw new IOException(file + " has a damaged header (table " + t + ": type " + type + ", length "
+						+ length + "); regenerate it");
+			long bytes = type == CHAR_TABLE ? 2L * length : 4L * length;
+			// a file cut short would otherwise fail on the first lookup past its end
+			if (position + bytes + 8 > in.limit())
+				throw new IOException(file + " is truncated; regenerate it");
+
+			ByteBuffer slice = in.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+			slice.position((int) position);
+			slice.limit((int) (position + bytes));
+			slice = slice.slice().order(ByteOrder.LITTLE_ENDIAN);
+			tables[t] = type == CHAR_TABLE ? slice.asCharBuffer() : slice.asIntBuffer();
+			position += align(bytes);
+		}
+		return tables;
+	}
+
+	// reads the whole file and checks its checksum
+	static void verify(File file) throws IOException {
+		ByteBuffer in = mapFile(file);
+		if (in.limit() < 24 || in.getInt(0) != MAGIC)
+			throw new IOException(file + " is not a table file");
+		checkCrc(file, in);
+	}
+
+	private static void checkCrc(File file, ByteBuffer in) throws IOException {
+		int size = in.limit() - 8;
+		CRC32 crc = new CRC32();
+		ByteBuffer payload = in.duplicate();
+		payload.limit(size);
+		crc.update(payload);
+		if (crc.getValue() != in.getLong(size))
+			throw new IOException(file + " is corrupt (checksum mismatch)");
+	}
+
+	private static ByteBuffer mapFile(File file) throws IOException {
+		MappedByteBuffer mapped;
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			if (raf.length() >= MAX_BYTES)
+				throw new IOException(file + " is " + raf.length() + " bytes; a table file must be under 2 GB");
+			// the mapping stays valid after the channel is closed
+			mapped = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+		} finally {
+			raf.close();
+		}
+		return mapped.order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	private static long bytes(Buffer table) {
+		return table instanceof CharBuffer ? 2L * table.limit() : 4L * table.limit();
+	}
+
+	private static long align(long bytes) {
+		return (bytes + 7) & ~7L;
+	}
+}
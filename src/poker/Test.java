@@ -1,7 +1,17 @@
 package poker;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.lang.management.ManagementFactory;
+import java.nio.CharBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 import org.json.JSONArray;
 
 
@@ -13,6 +23,28 @@ public static void main(String[] argv) {
 		//questionTwoTests();
 		//questionThreeTests();
 		//comprehensiveQuestionTwoTest();
+		//fiveCardLookupTest();
+		//sevenCardLookupTest();
+		//bitboardTest();
+		//scratchEvaluatorTest();
+		//batchEvaluatorTest();
+		//equityTest();
+		//exactEquityTest();
+		//tableFileTest();
+		//handStateTest();
+		//showdownTest();
+		//omahaTest();
+		//lowballTest();
+		//multiDeckTest();
+		//wildCardTest();
+		//benchmarkTest();
+		//censusTest();
+		//evaluationCacheTest();
+		//suitIsomorphismTest();
+		//preflopEquityTest();
+		//rangeTest();
+		//handStrengthTest();
+		//handClustersTest();
 		
 		
 		JSONArray straight = new JSONArray(Arrays.asList(new String[]{"9X", "WH", "KS", "JD", "QH"}));
@@ -267,4 +299,1194 @@ public static void main(String[] argv) {
 	}
 
 	
+	// checks the five card lookup engine against the reference logic on every five card hand
+	public static void fiveCardLookupTest() {
+
+		System.out.println("\nFIVE CARD LOOKUP TEST\n");
+
+		int[] hand = new int[5];
+		int checked = 0;
+		int mismatches = 0;
+
+		for (hand[0] = 0; hand[0] < 52; hand[0]++)
+		for (hand[1] = hand[0] + 1; hand[1] < 52; hand[1]++)
+		for (hand[2] = hand[1] + 1; hand[2] < 52; hand[2]++)
+		for (hand[3] = hand[2] + 1; hand[3] < 52; hand[3]++)
+		for (hand[4] = hand[3] + 1; hand[4] < 52; hand[4]++) {
+			int expected = PokerHandEvaluator.REFERENCE.score(hand);
+			int actual = FiveCardLookup.INSTANCE.score(hand);
+			checked++;
+
+			if (expected != actual) {
+				if (mismatches < 10) System.out.println("Mismatch: " + Arrays.toString(hand));
+				mismatches++;
+			}
+		}
+
+		System.out.println("Hands checked: " + checked + ", mismatches: " + mismatches);
+		System.out.println("------------------------------------------------------------");
+	}
+
+	// checks the seven card lookup engine against the reference logic on random seven card hands
+	public static void sevenCardLookupTest() {
+
+		System.out.println("\nSEVEN CARD LOOKUP TEST\n");
+
+		Random random = new Random(7);
+		int[] deck = new int[52];
+		for (int i = 0; i < deck.length; i++) deck[i] = i;
+
+		int[] hand = new int[7];
+		int checked = 1000000;
+		int mismatches = 0;
+
+		for (int t = 0; t < checked; t++) {
+			// deal seven cards with a partial shuffle
+			for (int i = 0; i < 7; i++) {
+				int j = i + random.nextInt(52 - i);
+				int card = deck[j];
+				deck[j] = deck[i];
+				deck[i] = card;
+				hand[i] = card;
+			}
+
+			if (PokerHandEvaluator.REFERENCE.score(hand) != SevenCardLookup.INSTANCE.score(hand)) {
+				if (mismatches < 10) System.out.println("Mismatch: " + Arrays.toString(hand));
+				mismatches++;
+			}
+		}
+
+		System.out.println("Hands checked: " + checked + ", mismatches: " + mismatches);
+		System.out.println("------------------------------------------------------------");
+	}
+
+	// checks the bitboard engine against the reference logic on random hands of 1 to 12 cards
+	public static void bitboardTest() {
+
+		System.out.println("\nBITBOARD TEST\n");
+
+		Random random = new Random(6);
+		int[] deck = new int[52];
+		for (int i = 0; i < deck.length; i++) deck[i] = i;
+
+		int checked = 500000;
+		int mismatches = 0;
+
+		for (int t = 0; t < checked; t++) {
+			int[] hand = new int[1 + random.nextInt(12)];
+			for (int i = 0; i < hand.length; i++) {
+				int j = i + random.nextInt(52 - i);
+				int card = deck[j];
+				deck[j] = deck[i];
+				deck[i] = card;
+				hand[i] = card;
+			}
+
+			if (PokerHandEvaluator.REFERENCE.score(hand) != BitboardEvaluator.INSTANCE.score(hand)) {
+				if (mismatches < 10) System.out.println("Mismatch: " + Arrays.toString(hand));
+				mismatches++;
+			}
+		}
+
+		System.out.println("Hands checked: " + checked + ", mismatches: " + mismatches);
+		System.out.println("------------------------------------------------------------");
+	}
+
+	// checks the scratch evaluator against the reference logic on random shoe hands
+	// (two decks, so cards can repeat) and measures how much it allocates per hand
+	public static void scratchEvaluatorTest() {
+
+		System.out.println("\nSCRATCH EVALUATOR TEST\n");
+
+		Random random = new Random(8);
+		int numHands = 100000;
+		int[][] hands = new int[numHands][];
+		for (int t = 0; t < numHands; t++) {
+			hands[t] = new int[5 + random.nextInt(8)];
+			for (int i = 0; i < hands[t].length; i++) hands[t][i] = random.nextInt(52);
+		}
+
+		ScratchEvaluator evaluator = ScratchEvaluator.forCurrentThread();
+		HandResult result = new HandResult();
+		int mismatches = 0;
+
+		for (int[] hand : hands) {
+			evaluator.evaluate(hand, hand.length, result);
+			if (result.getScore() != PokerHandEvaluator.REFERENCE.score(hand)) {
+				if (mismatches < 10) System.out.println("Mismatch: " + Arrays.toString(hand));
+				mismatches++;
+			}
+		}
+		System.out.println("Hands checked: " + numHands + ", mismatches: " + mismatches);
+
+		// warm up, then count the bytes this thread allocates over many evaluations
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long checksum = 0;
+		for (int round = 0; round < 20; round++) {
+			for (int[] hand : hands) {
+				evaluator.evaluate(hand, hand.length, result);
+				checksum += result.getScore();
+			}
+		}
+
+		int rounds = 20;
+		long before = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+		for (int round = 0; round < rounds; round++) {
+			for (int[] hand : hands) {
+				evaluator.evaluate(hand, hand.length, result);
+				checksum += result.getScore();
+			}
+		}
+		long allocated = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+
+		System.out.println("Bytes allocated per evaluation: " + (double) allocated / ((long) rounds * numHands)
+				+ " (checksum " + checksum + ")");
+		System.out.println("------------------------------------------------------------");
+	}
+
+	// scores a batch of random hands in parallel and checks it against scoring them one at a time
+	public static void batchEvaluatorTest() {
+
+		System.out.println("\nBATCH EVALUATOR TEST\n");
+
+		Random random = new Random(9);
+		int numHands = 1000000;
+		int[] cards = new int[numHands * 7];
+		long[] masks = new long[numHands];
+		int[] deck = new int[52];
+		for (int i = 0; i < deck.length; i++) deck[i] = i;
+
+		for (int t = 0; t < numHands; t++) {
+			for (int i = 0; i < 7; i++) {
+				int j = i + random.nextInt(52 - i);
+				int card = deck[j];
+				deck[j] = deck[i];
+				deck[i] = card;
+				cards[t * 7 + i] = card;
+				masks[t] |= Card.bit(card);
+			}
+		}
+
+		long start = System.nanoTime();
+		int[] packedScores = BatchEvaluator.scoreAll(cards, 7);
+		long packedTime = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		int[] maskScores = BatchEvaluator.scoreAll(masks);
+		long maskTime = System.nanoTime() - start;
+
+		int mismatches = 0;
+		int[] hand = new int[7];
+		for (int t = 0; t < numHands; t++) {
+			System.arraycopy(cards, t * 7, hand, 0, 7);
+			int expected = PokerHandEvaluator.REFERENCE.score(hand);
+			if (packedScores[t] != expected || maskScores[t] != expected) mismatches++;
+		}
+
+		System.out.println("Hands checked: " + numHands + ", mismatches: " + mismatches);
+		System.out.println("Packed batch: " + packedTime / 1000000 + " ms, mask batch: " + maskTime / 1000000 + " ms");
+		System.out.println("------------------------------------------------------------");
+	}
+
+	// prints Monte Carlo equities for a few well known Hold'em matchups
+	public static void equityTest() {
+
+		System.out.println("\nEQUITY TEST\n");
+
+		// aces against kings preflop: about 82% to 18%
+		int[][] acesKings = {parseCards("AS", "AH"), parseCards("KS", "KH")};
+		printEquity("AA vs KK", EquityCalculator.monteCarlo(acesKings, new int[0], 10000000, 1,
+				ForkJoinPool.commonPool()));
+
+		// a flush draw and an open ended straight draw against a pair on the flop
+		int[][] draws = {parseCards("AH", "KH"), parseCards("JC", "10D"), parseCards("QS", "QD")};
+		printEquity("AKh vs JT vs QQ on Qh 9h 8c", EquityCalculator.monteCarlo(draws, parseCards("QH", "9H", "8C"),
+				10000000, 1, ForkJoinPool.commonPool()));
+
+		System.out.println("------------------------------------------------------------");
+	}
+
+	private static void printEquity(String spot, Equity equity) {
+		System.out.println(spot);
+		System.out.println(equity);
+		System.out.println();
+	}
+
+	// parses cards in the "10S" / "KH" notation
+	private static int[] parseCards(String... cards) {
+		int[] parsed = new int[cards.length];
+		for (int i = 0; i < cards.length; i++) parsed[i] = Card.parse(cards[i]);
+		return parsed;
+	}
+
+	// checks exact equity against scoring every board with evalHand, then prints an exact preflop matchup
+	public static void exactEquityTest() {
+
+		System.out.println("\nEXACT EQUITY TEST\n");
+
+		int[][] players = {parseCards("AH", "KH"), parseCards("JC", "10D"), parseCards("QS", "QD")};
+		int[] flop = parseCards("QH", "9H", "8C");
+		Equity exact = EquityCalculator.exact(players, flop);
+
+		// brute force: every turn and river through evalHand
+		long used = Card.mask(flop);
+		for (int[] hole : players) used |= Card.mask(hole);
+
+		Equity bruteForce = new Equity(players.length);
+		int[] scores = new int[players.length];
+		int[] hand = new int[7];
+		for (int turn = 0; turn < 52; turn++) {
+			if ((used & Card.bit(turn)) != 0) continue;
+			for (int river = turn + 1; river < 52; river++) {
+				if ((used & Card.bit(river)) != 0) continue;
+				for (int p = 0; p < players.length; p++) {
+					hand[0] = players[p][0];
+					hand[1] = players[p][1];
+					System.arraycopy(flop, 0, hand, 2, 3);
+					hand[5] = turn;
+					hand[6] = river;
+					scores[p] = PokerHandEvaluator.evalHand(hand).getScore();
+				}
+				bruteForce.record(scores);
+			}
+		}
+
+		boolean same = exact.getBoards() == bruteForce.getBoards();
+		for (int p = 0; p < players.length; p++)
+			same &= exact.getWins(p) == bruteForce.getWins(p) && exact.getTies(p) == bruteForce.getTies(p);
+
+		printEquity("AKh vs JT vs QQ on Qh 9h 8c", exact);
+		System.out.println("Matches brute force: " + same + "\n");
+
+		long start = System.nanoTime();
+		Equity preflop = EquityCalculator.exact(new int[][] {parseCards("AS", "AH"), parseCards("KS", "KH")}, new int[0]);
+		printEquity("AA vs KK (" + (System.nanoTime() - start) / 1000000 + " ms)", preflop);
+
+		System.out.println("------------------------------------------------------------");
+	}
+
+	// writes the seven card tables to a file, maps them back and checks them, then checks that a damaged file is rejected
+	public static void tableFileTest() {
+
+		System.out.println("\nTABLE FILE TEST\n");
+
+		try {
+			File file = File.createTempFile("poker-tables", ".bin");
+			file.deleteOnExit();
+
+			long start = System.nanoTime();
+			SevenCardLookup.saveTables(file);
+			System.out.println("Wrote " + file.length() + " bytes in " + (System.nanoTime() - start) / 1000000 + " ms");
+
+			start = System.nanoTime();
+			CharBuffer[] mapped = SevenCardLookup.load(file);
+			System.out.println("Mapped in " + (System.nanoTime() - start) / 1000000 + " ms");
+
+			CharBuffer[] tables = SevenCardLookup.tables();
+			System.out.println("Same tables: " + (tables[0].equals(mapped[0]) && tables[1].equals(mapped[1])));
+
+			// flip one byte in the middle of the file
+			RandomAccessFile raf = new RandomAccessFile(file, "rw");
+			try {
+				raf.seek(raf.length() / 2);
+				int b = raf.read();
+				raf.seek(raf.length() / 2);
+				raf.write(b ^ 1);
+			} finally {
+				raf.close();
+			}
+
+			try {
+				TableFile.verify(file);
+				System.out.println("Damaged file rejected: false");
+			} catch (IOException e) {
+				System.out.println("Damaged file rejected: true (" + e.getMessage() + ")");
+			}
+
+			// a table count, table type or table length that cannot be right (little endian ints)
+			int[][] damage = {{12, -1}, {12, 1 << 28}, {16, 7}, {20, -1}};
+			int rejected = 0;
+			for (int[] d : damage) {
+				SevenCardLookup.saveTables(file);
+				raf = new RandomAccessFile(file, "rw");
+				try {
+					raf.seek(d[0]);
+					raf.writeInt(Integer.reverseBytes(d[1]));
+				} finally {
+					raf.close();
+				}
+				try {
+					TableFile.map(file, SevenCardLookup.TABLES_VERSION);
+				} catch (IOException e) {
+					rejected++;
+				}
+			}
+			System.out.println("Damaged headers rejected: " + rejected + " of " + damage.length);
+		} catch (IOException e) {
+			System.out.println("Table file test failed: " + e);
+		}
+
+		System.out.println("------------------------------------------------------------");
+	}
+
+	// deals a hand street by street, then walks every turn and river of a flop with push/pop and checks each hand against evalHand
+	public static void handStateTest() {
+
+		System.out.println("\nHAND STATE TEST\n");
+
+		int[] hole = parseCards("AH", "KH");
+		int[] flop = parseCards("QH", "7C", "2H");
+		HandState state = new HandState(hole);
+		for (int card : flop) state.add(card);
+		System.out.println("Flop:  " + state + " -> " + state.getCategory());
+		state.push(Card.parse("JH"));
+		System.out.println("Turn:  " + state + " -> " + state.getCategory());
+		state.push(Card.parse("10H"));
+		System.out.println("River: " + state + " -> " + state.getCategory() + " (" + state.getSuitCount(Card.HEARTS)
+				+ " hearts, " + state.getRankCount(14) + " ace)");
+		try {
+			state.remove(Card.parse("10H"));
+			System.out.println("Removing a pushed card rejected: false\n");
+		} catch (IllegalArgumentException e) {
+			System.out.println("Removing a pushed card rejected: true\n");
+		}
+		state.pop();
+		state.pop();
+
+		long hands = 0;
+		long mismatches = 0;
+		int[] hand = new int[7];
+		System.arraycopy(hole, 0, hand, 0, 2);
+		System.arraycopy(flop, 0, hand, 2, 3);
+		long start = System.nanoTime();
+		for (int turn = 0; turn < Card.NUM_CARDS; turn++) {
+			if (state.contains(turn)) continue;
+			state.push(turn);
+			for (int river = turn + 1; river < Card.NUM_CARDS; river++) {
+				if (state.contains(river)) continue;
+				state.push(river);
+				hand[5] = turn;
+				hand[6] = river;
+				if (state.getScore() != PokerHandEvaluator.evalHand(hand).getScore()) mismatches++;
+				hands++;
+				state.pop();
+			}
+			state.pop();
+		}
+
+		System.out.println("Hands checked: " + hands + ", mismatches: " + mismatches
+				+ " (" + (System.nanoTime() - start) / 1000000 + " ms)");
+		System.out.println("Back to the flop: " + state + " (" + state.size() + " cards)");
+
+		System.out.println("------------------------------------------------------------");
+	}
+
+	// prints a split pot, then checks winners and top-k selection against a full sort on a large field
+	public static void showdownTest() {
+
+		System.out.println("\nSHOWDOWN TEST\n");
+
+		ArrayList<JSONArray> hands = new ArrayList<JSONArray>();
+		hands.add(new JSONArray(Arrays.asList(new String[]{"AH", "KD", "QS", "JC", "10H"})));
+		hands.add(new JSONArray(Arrays.asList(new String[]{"2C", "2D", "5S", "7C", "9H"})));
+		hands.add(new JSONArray(Arrays.asList(new String[]{"10S", "JD", "QH", "KC", "AS"})));
+		PokerHandEvaluator.findBestHand(hands, false);
+
+		Random random = new Random(13);
+		int[] scores = new int[5000];
+		int[] hand = new int[7];
+		for (int i = 0; i < scores.length; i++) {
+			long mask = 0L;
+			for (int c = 0; c < hand.length; c++) {
+				do {
+					hand[c] = random.nextInt(Card.NUM_CARDS);
+				} while ((mask & Card.bit(hand[c])) != 0);
+				mask |= Card.bit(hand[c]);
+			}
+			scores[i] = SevenCardLookup.INSTANCE.score(hand);
+		}
+
+		// reference: sort (score, index) descending by score, ascending by index
+		long[] keys = new long[scores.length];
+		for (int i = 0; i < scores.length; i++) keys[i] = ((long) scores[i] << 32) | (~i & 0xFFFFFFFFL);
+		Arrays.sort(keys);
+
+		int[] winners = Showdown.winners(scores);
+		boolean same = true;
+		for (int w = 0; w < winners.length; w++)
+			same &= scores[winners[w]] == scores[~(int) keys[keys.length - 1]] && (w == 0 || winners[w] > winners[w - 1]);
+		int numTied = 0;
+		for (int score : scores)
+			if (score == scores[winners[0]]) numTied++;
+		same &= numTied == winners.length;
+		System.out.println("Winners of " + scores.length + " hands: " + winners.length + " ("
+				+ PokerHandEvaluator.categoryOf(scores[winners[0]]) + "), same as sorting: " + same);
+
+		int[] top = Showdown.topK(scores, 100);
+		same = top.length == 100;
+		for (int t = 0; t < top.length; t++) same &= top[t] == ~(int) keys[keys.length - 1 - t];
+		System.out.println("Top 100 same as sorting: " + same);
+
+		System.out.println("------------------------------------------------------------");
+	}
+
+	// prints a few Omaha hands, then checks random PLO and PLO5 hands against scoring every legal five cards with evalHand
+	public static void omahaTest() {
+
+		System.out.println("\nOMAHA TEST\n");
+
+		// one heart in hand: no flush, and the board's three aces play with the pair of kings
+		JSONArray hole = new JSONArray(Arrays.asList(new String[]{"KS", "KH", "QD", "JC"}));
+		JSONArray board = new JSONArray(Arrays.asList(new String[]{"AH", "AD", "AC", "5H", "2H"}));
+		PokerHandEvaluator.EvaluationInfo info = PokerHandEvaluator.evalOmahaHand(hole, board);
+		System.out.println("Hole: " + hole + " Board: " + board + " -> " + info.getCategory());
+
+		hole = new JSONArray(Arrays.asList(new String[]{"KH", "9H", "8S", "8D", "2C"}));
+		info = PokerHandEvaluator.evalOmahaHand(hole, board);
+		System.out.println("Hole: " + hole + " Board: " + board + " -> " + info.getCategory() + "\n");
+
+		Random random = new Random(14);
+		int[] five = new int[5];
+		for (int holeSize = 4; holeSize <= 5; holeSize++) {
+			int deals = 100000;
+			int mismatches = 0;
+			int[][] holes = new int[deals][];
+			int[][] boards = new int[deals][];
+			for (int d = 0; d < deals; d++) {
+				int[] cards = randomCards(random, holeSize + 3 + random.nextInt(3));
+				holes[d] = Arrays.copyOf(cards, holeSize);
+				boards[d] = Arrays.copyOfRange(cards, holeSize, cards.length);
+			}
+
+			long start = System.nanoTime();
+			int[] scores = new int[deals];
+			for (int d = 0; d < deals; d++) scores[d] = OmahaEvaluator.score(holes[d], boards[d]);
+			long fast = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for (int d = 0; d < deals; d++) {
+				int best = 0;
+				int[] h = holes[d];
+				int[] b = boards[d];
+				for (int i = 0; i < h.length; i++)
+					for (int j = i + 1; j < h.length; j++)
+						for (int x = 0; x < b.length; x++)
+							for (int y = x + 1; y < b.length; y++)
+								for (int z = y + 1; z < b.length; z++) {
+									five[0] = h[i];
+									five[1] = h[j];
+									five[2] = b[x];
+									five[3] = b[y];
+									five[4] = b[z];
+									best = Math.max(best, PokerHandEvaluator.evalHand(five).getScore());
+								}
+				if (best != scores[d]) mismatches++;
+			}
+			long naive = System.nanoTime() - start;
+
+			System.out.println(holeSize + " hole cards: " + deals + " deals, mismatches: " + mismatches
+					+ ", " + fast / deals + " ns per hand vs " + naive / deals + " ns with evalHand");
+		}
+
+		System.out.println("------------------------------------------------------------");
+	}
+
+	// n distinct random cards
+	private static int[] randomCards(Random random, int n) {
+		int[] cards = new int[n];
+		long used = 0L;
+		for (int c = 0; c < n; c++) {
+			do {
+				cards[c] = random.nextInt(Card.NUM_CARDS);
+			} while ((used & Card.bit(cards[c])) != 0);
+			used |= Card.bit(cards[c]);
+		}
+		return cards;
+	}
+
+	// checks ace-to-five lows and Omaha Hi/Lo against brute force, deuce-to-seven against a known order,
+	// and compares hiLo() throughput with the high-only seven card lookup
+	public static void lowballTest() {
+
+		System.out.println("\nLOWBALL TEST\n");
+
+		int[] hole = parseCards("AH", "2D", "KS", "KD");
+		int[] board = parseCards("3C", "5S", "8H", "KH", "QD");
+		long hiLo = OmahaEvaluator.scoreHiLo(hole, board);
+		System.out.println("Omaha Hi/Lo AH 2D KS KD on 3C 5S 8H KH QD: high "
+				+ PokerHandEvaluator.categoryOf(LowballEvaluator.high(hiLo)) + ", low "
+				+ LowballEvaluator.aceToFiveToString(LowballEvaluator.low(hiLo)));
+
+		// deuce-to-seven, best first
+		String[][] order = {
+			{"7H", "5D", "4S", "3C", "2H"}, {"7H", "6D", "4S", "3C", "2H"}, {"8H", "5D", "4S", "3C", "2H"},
+			{"AH", "5D", "4S", "3C", "2H"}, {"2H", "2D", "4S", "3C", "5H"}, {"6H", "5D", "4S", "3C", "2H"},
+			{"7H", "5H", "4H", "3H", "2H"}
+		};
+		boolean ordered = true;
+		int previous = Integer.MAX_VALUE;
+		for (String[] hand : order) {
+			int low = LowballEvaluator.deuceToSeven(Card.mask(parseCards(hand)));
+			ordered &= low < previous;
+			previous = low;
+		}
+		System.out.println("Deuce-to-seven order (7-5-4-3-2 ... straight, flush): " + ordered + "\n");
+
+		Random random = new Random(15);
+		int mismatches = 0;
+		int hiLoMismatches = 0;
+		int hands = 100000;
+		for (int h = 0; h < hands; h++) {
+			int[] cards = randomCards(random, 7);
+			int best = 0x2000;
+			for (int skip1 = 0; skip1 < 7; skip1++) {
+				for (int skip2 = skip1 + 1; skip2 < 7; skip2++) {
+					int ranks = 0;
+					for (int c = 0; c < 7; c++) {
+						if (c != skip1 && c != skip2) ranks |= 1 << (Card.rank(cards[c]) == 14 ? 0 : Card.rank(cards[c]) - 1);
+					}
+					if (Integer.bitCount(ranks) == 5) best = Math.min(best, ranks);
+				}
+			}
+			int expected = best == 0x2000 ? LowballEvaluator.NO_LOW : 0x2000 - best;
+			int expectedEight = best < 0x100 ? expected : LowballEvaluator.NO_LOW;
+			long mask = Card.mask(cards);
+			if (LowballEvaluator.aceToFive(mask) != expected || LowballEvaluator.aceToFiveEight(mask) != expectedEight)
+				mismatches++;
+
+			// hiLo() shares one set of suit masks between the high and the low
+			long key = 0L;
+			for (int card : cards) key += SevenCardLookup.cardKey(card);
+			long expectedHiLo = ((long) PokerHandEvaluator.evalHand(cards).getScore() << 32) | expectedEight;
+			if (LowballEvaluator.hiLo(mask) != expectedHiLo || LowballEvaluator.hiLo(key, mask) != expectedHiLo)
+				hiLoMismatches++;
+		}
+		System.out.println("Ace-to-five: " + hands + " seven card hands, mismatches: " + mismatches
+				+ ", hiLo() mismatches: " + hiLoMismatches);
+
+		mismatches = 0;
+		int[] five = new int[5];
+		for (int h = 0; h < hands; h++) {
+			int[] cards = randomCards(random, 9);
+			int[] h4 = Arrays.copyOf(cards, 4);
+			int[] b5 = Arrays.copyOfRange(cards, 4, 9);
+			int high = 0;
+			int low = LowballEvaluator.NO_LOW;
+			for (int i = 0; i < 4; i++)
+				for (int j = i + 1; j < 4; j++)
+					for (int x = 0; x < 5; x++)
+						for (int y = x + 1; y < 5; y++)
+							for (int z = y + 1; z < 5; z++) {
+								five[0] = h4[i];
+								five[1] = h4[j];
+								five[2] = b5[x];
+								five[3] = b5[y];
+								five[4] = b5[z];
+								high = Math.max(high, PokerHandEvaluator.evalHand(five).getScore());
+								low = Math.max(low, LowballEvaluator.aceToFiveEight(Card.mask(five)));
+							}
+			if (OmahaEvaluator.scoreHiLo(h4, b5) != (((long) high << 32) | low)) mismatches++;
+		}
+		System.out.println("Omaha Hi/Lo: " + hands + " deals, mismatches: " + mismatches + "\n");
+
+		long[] keys = new long[1000000];
+		long[] masks = new long[keys.length];
+		for (int h = 0; h < keys.length; h++) {
+			for (int card : randomCards(random, 7)) {
+				keys[h] += SevenCardLookup.cardKey(card);
+				masks[h] |= Card.bit(card);
+			}
+		}
+		// best of several rounds, as single rounds are noisy at a few ns per hand
+		long highOnly = Long.MAX_VALUE;
+		long both = Long.MAX_VALUE;
+		long checksum = 0;
+		for (int round = 0; round < 10; round++) {
+			long start = System.nanoTime();
+			for (int h = 0; h < keys.length; h++) checksum += SevenCardLookup.score(keys[h], masks[h]);
+			highOnly = Math.min(highOnly, System.nanoTime() - start);
+			start = System.nanoTime();
+			for (int h = 0; h < keys.length; h++) checksum += LowballEvaluator.hiLo(keys[h], masks[h]);
+			both = Math.min(both, System.nanoTime() - start);
+		}
+		System.out.println("Seven card high only: " + highOnly / keys.length + " ns per hand, high and low: "
+				+ both / keys.length + " ns per hand (checksum " + checksum + ")");
+
+		System.out.println("------------------------------------------------------------");
+	}
+
+	// prints a few shoe hands, checks random six deck hands against the reference logic
+	// (and against counting for five of a kind), and times five card shoe hands
+	public static void multiDeckTest() {
+
+		System.out.println("\nMULTI DECK TEST\n");
+
+		PokerHandEvaluator.setEngine(MultiDeckEvaluator.INSTANCE);
+		PokerHandEvaluator.printEvaluationInfo(new JSONArray(Arrays.asList(new String[]{"7D", "7D", "7D", "7D", "7D"})));
+		PokerHandEvaluator.printEvaluationInfo(new JSONArray(Arrays.asList(new String[]{"7D", "7H", "7S", "7C", "7D", "AS", "AS"})));
+		PokerHandEvaluator.printEvaluationInfo(new JSONArray(Arrays.asList(new String[]{"7D", "7D", "9D", "JD", "KD"})));
+		PokerHandEvaluator.setEngine(PokerHandEvaluator.REFERENCE);
+
+		Random random = new Random(16);
+		int[] shoe = new int[6 * Card.NUM_CARDS];
+		for (int i = 0; i < shoe.length; i++) shoe[i] = i % Card.NUM_CARDS;
+
+		for (int size = 5; size <= 7; size += 2) {
+			int hands = 200000;
+			int mismatches = 0;
+			int fives = 0;
+			int[] hand = new int[size];
+			for (int h = 0; h < hands; h++) {
+				// deal from a shuffled prefix of the shoe
+				for (int c = 0; c < size; c++) {
+					int j = c + random.nextInt(shoe.length - c);
+					int card = shoe[j];
+					shoe[j] = shoe[c];
+					shoe[c] = card;
+					hand[c] = card;
+				}
+
+				int[] rankCounts = new int[15];
+				int[] cardCounts = new int[Card.NUM_CARDS];
+				int expected = -1;
+				for (int card : hand) {
+					rankCounts[Card.rank(card)]++;
+					cardCounts[card]++;
+				}
+				for (int rank = 2; rank <= 14; rank++) {
+					if (rankCounts[rank] >= 5 && expected < 0)
+						expected = (PokerHandEvaluator.Category.FIVE_OF_A_KIND.ordinal() << 20) | (rank << 16);
+				}
+				for (int card = 0; card < Card.NUM_CARDS; card++) {
+					if (cardCounts[card] >= 5)
+						expected = (PokerHandEvaluator.Category.FLUSH_FIVE.ordinal() << 20) | (Card.rank(card) << 16);
+				}
+				if (expected >= 0) fives++;
+				else expected = PokerHandEvaluator.REFERENCE.score(hand);
+
+				if (MultiDeckEvaluator.INSTANCE.score(hand) != expected) mismatches++;
+			}
+			System.out.println(size + " card shoe hands: " + hands + ", five of a kind or better: " + fives
+					+ ", mismatches: " + mismatches);
+		}
+
+		// five of a kind is too rare to hit by chance above, so check every five card rank multiset
+		int mismatches = 0;
+		for (int rank = 2; rank <= 14; rank++) {
+			int[] five = {Card.of(rank, 0), Card.of(rank, 1), Card.of(rank, 2), Card.of(rank, 0), Card.of(rank, 3)};
+			if (PokerHandEvaluator.categoryOf(MultiDeckEvaluator.INSTANCE.score(five)) != PokerHandEvaluator.Category.FIVE_OF_A_KIND)
+				mismatches++;
+			for (int i = 0; i < 5; i++) five[i] = Card.of(rank, Card.SPADES);
+			if (PokerHandEvaluator.categoryOf(MultiDeckEvaluator.INSTANCE.score(five)) != PokerHandEvaluator.Category.FLUSH_FIVE)
+				mismatches++;
+		}
+		System.out.println("Five of a kind and flush five of every rank, mismatches: " + mismatches + "\n");
+
+		int[] packed = new int[5 * 1000000];
+		for (int i = 0; i < packed.length; i++) packed[i] = shoe[random.nextInt(shoe.length)];
+		int[] distinct = new int[packed.length];
+		for (int h = 0; h < distinct.length; h += 5) System.arraycopy(randomCards(random, 5), 0, distinct, h, 5);
+		for (int round = 0; round < 3; round++) {
+			long checksum = 0;
+			long start = System.nanoTime();
+			for (int h = 0; h < distinct.length; h += 5)
+				checksum += FiveCardLookup.classScore(FiveCardLookup.handClass(distinct[h], distinct[h + 1],
+						distinct[h + 2], distinct[h + 3], distinct[h + 4]));
+			long single = System.nanoTime() - start;
+			start = System.nanoTime();
+			for (int h = 0; h < packed.length; h += 5) checksum += MultiDeckEvaluator.score(packed, h, 5);
+			long multi = System.nanoTime() - start;
+			if (round == 2) {
+				System.out.println("Five card hands, single deck lookup: " + single / 1000000 + " ns per hand, shoe: "
+						+ multi / 1000000 + " ns per hand (checksum " + checksum + ")");
+			}
+		}
+
+		System.out.println("------------------------------------------------------------");
+	}
+
+	// prints a few wild card hands, then checks random hands against trying every substitution
+	// and checks that the reported substitutes make the reported hand
+	public static void wildCardTest() {
+
+		System.out.println("\nWILD CARD TEST\n");
+
+		PokerHandEvaluator.printWildEvaluationInfo(new JSONArray(Arrays.asList(new String[]{"2H", "2D", "AS", "KS", "QS"})), 2);
+		PokerHandEvaluator.printWildEvaluationInfo(new JSONArray(Arrays.asList(new String[]{"JK", "AH", "AD", "AC", "AS"})), 0);
+		PokerHandEvaluator.printWildEvaluationInfo(new JSONArray(Arrays.asList(new String[]{"JK", "7C", "8D", "9H", "JS"})), 0);
+		PokerHandEvaluator.printWildEvaluationInfo(new JSONArray(Arrays.asList(new String[]{"JK"})), 0);
+		PokerHandEvaluator.printWildEvaluationInfo(new JSONArray(Arrays.asList(new String[]{"2D", "JK"})), 2);
+		try {
+			WildCardEvaluator.score(0L, 0);
+			System.out.println("Empty hand rejected: false\n");
+		} catch (IllegalArgumentException e) {
+			System.out.println("Empty hand rejected: true\n");
+		}
+
+		Random random = new Random(17);
+		for (int size = 5; size <= 7; size += 2) {
+			for (int wilds = 1; wilds <= 2; wilds++) {
+				int hands = size == 5 ? 20000 : 2000;
+				int mismatches = 0;
+				for (int h = 0; h < hands; h++) {
+					long naturals = Card.mask(randomCards(random, size - wilds));
+					int score = WildCardEvaluator.score(naturals, wilds);
+
+					// every set of distinct cards the wilds could be
+					int best = 0;
+					for (int a = 0; a < Card.NUM_CARDS; a++) {
+						if ((naturals & Card.bit(a)) != 0) continue;
+						if (wilds == 1) {
+							best = Math.max(best, BitboardEvaluator.score(naturals | Card.bit(a)));
+							continue;
+						}
+						for (int b = a + 1; b < Card.NUM_CARDS; b++) {
+							if ((naturals & Card.bit(b)) != 0) continue;
+							best = Math.max(best, BitboardEvaluator.score(naturals | Card.bit(a) | Card.bit(b)));
+						}
+					}
+
+					// five of a kind is the only hand that needs a card twice
+					boolean five = PokerHandEvaluator.categoryOf(score) == PokerHandEvaluator.Category.FIVE_OF_A_KIND;
+					if (!five && score != best) mismatches++;
+
+					long played = naturals;
+					for (int card : WildCardEvaluator.substitutes(naturals, wilds)) played |= Card.bit(card);
+					if (!five && BitboardEvaluator.score(played) != score) mismatches++;
+				}
+				System.out.println(size + " cards with " + wilds + " wild" + (wilds == 1 ? ": " : "s: ") + hands
+						+ " hands, mismatches: " + mismatches);
+			}
+		}
+
+		System.out.println("------------------------------------------------------------");
+	}
+
+	// runs one call of every benchmark, so a broken case shows up without a full timed run
+	public static void benchmarkTest() {
+
+		System.out.println("\nBENCHMARK TEST\n");
+
+		EvaluationEngine previous = PokerHandEvaluator.getEngine();
+		int failed = 0;
+		List<Benchmark.Case> cases = Benchmark.cases();
+		for (Benchmark.Case c : cases) {
+			if (c.engine != null) PokerHandEvaluator.setEngine(c.engine);
+			try {
+				c.run(0);
+			} catch (RuntimeException e) {
+				System.out.println(c.name + " failed: " + e);
+				failed++;
+			} finally {
+				PokerHandEvaluator.setEngine(previous);
+			}
+		}
+		System.out.println(cases.size() + " benchmarks, failed: " + failed);
+
+		System.out.println("------------------------------------------------------------");
+	}
+
+	// counts every five card hand with each engine and every seven card hand with the
+	// seven card tables, and checks the counts against the known ones
+	public static void censusTest() {
+
+		System.out.println("\nCENSUS TEST\n");
+
+		for (int e = 0; e < Benchmark.ENGINES.length; e++) {
+			long start = System.nanoTime();
+			long[] counts = Census.count(5, Benchmark.ENGINES[e]);
+			System.out.println("Five card census, " + Benchmark.ENGINE_NAMES[e] + ": "
+					+ (Census.matches(5, counts) ? "counts match" : "COUNTS DO NOT MATCH") + " ("
+					+ (System.nanoTime() - start) / 1000000 + " ms)");
+		}
+
+		long start = System.nanoTime();
+		long[] counts = Census.count(7, SevenCardLookup.INSTANCE);
+		System.out.println("Seven card census, seven-card-lookup (" + (System.nanoTime() - start) / 1000000 + " ms):");
+		System.out.println(Census.toString(7, counts));
+
+		System.out.println("------------------------------------------------------------");
+	}
+
+	// scores showdowns (one board, nine players, each deal replayed three times) through a
+	// cache and checks every score against the engine, then shares one cache between threads
+	public static void evaluationCacheTest() {
+
+		System.out.println("\nEVALUATION CACHE TEST\n");
+
+		final EvaluationCache cache = new EvaluationCache(SevenCardLookup.INSTANCE, 1 << 16);
+		Random random = new Random(20);
+		int mismatches = 0;
+		for (int deal = 0; deal < 20000; deal++) {
+			int[] cards = randomCards(random, 5 + 2 * 9);
+			for (int replay = 0; replay < 3; replay++) {
+				for (int p = 0; p < 9; p++) {
+					int[] hand = {cards[5 + 2 * p], cards[6 + 2 * p], cards[0], cards[1], cards[2], cards[3], cards[4]};
+					if (cache.score(hand) != SevenCardLookup.INSTANCE.score(hand)) mismatches++;
+				}
+			}
+		}
+		System.out.println("Showdowns: " + cache + ", mismatches: " + mismatches);
+
+		// five card hands keyed by rank counts hit far more often
+		cache.clear();
+		mismatches = 0;
+		for (int h = 0; h < 200000; h++) {
+			int[] hand = randomCards(random, 5);
+			if (cache.score(hand) != FiveCardLookup.INSTANCE.score(hand)) mismatches++;
+		}
+		System.out.println("Random five card hands: " + cache + ", mismatches: " + mismatches);
+
+		cache.clear();
+		final int[] threadMismatches = new int[4];
+		Thread[] threads = new Thread[threadMismatches.length];
+		for (int t = 0; t < threads.length; t++) {
+			final int id = t;
+			threads[t] = new Thread() {
+				public void run() {
+					Random random = new Random(id);
+					for (int h = 0; h < 200000; h++) {
+						int[] hand = randomCards(random, 5 + random.nextInt(3));
+						if (cache.score(hand) != BitboardEvaluator.INSTANCE.score(hand)) threadMismatches[id]++;
+					}
+				}
+			};
+			threads[t].start();
+		}
+		mismatches = 0;
+		for (int t = 0; t < threads.length; t++) {
+			try {
+				threads[t].join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			mismatches += threadMismatches[t];
+		}
+		System.out.println(threads.length + " threads sharing a cache: " + cache + ", mismatches: " + mismatches);
+
+		System.out.println("------------------------------------------------------------");
+	}
+
+	// counts the classes of common deals, checks the preflop and flop indexes against
+	// every raw hand, and runs a seven card census over classes instead of hands
+	public static void suitIsomorphismTest() {
+
+		System.out.println("\nSUIT ISOMORPHISM TEST\n");
+
+		int[][] deals = {{2}, {3}, {2, 3}, {5}, {7}};
+		String[] names = {"hole cards", "flops", "hole cards + flop", "five card hands", "seven card hands"};
+		for (int d = 0; d < deals.length; d++) {
+			final long[] weight = new long[1];
+			long classes = SuitIsomorphism.forEachClass(deals[d], new SuitIsomorphism.ClassVisitor() {
+				public void visit(long[] rounds, int w) {
+					weight[0] += w;
+				}
+			});
+			System.out.println(names[d] + ": " + classes + " classes covering " + weight[0] + " hands");
+		}
+
+		int[] preflopCounts = new int[SuitIsomorphism.PREFLOP_CLASSES];
+		int[] flopCounts = new int[SuitIsomorphism.FLOP_CLASSES];
+		int mismatches = 0;
+		for (int a = 0; a < Card.NUM_CARDS; a++) {
+			for (int b = a + 1; b < Card.NUM_CARDS; b++) {
+				preflopCounts[SuitIsomorphism.preflopIndex(a, b)]++;
+				for (int c = b + 1; c < Card.NUM_CARDS; c++) {
+					long flop = Card.bit(a) | Card.bit(b) | Card.bit(c);
+					int index = SuitIsomorphism.flopIndex(flop);
+					flopCounts[index]++;
+					if (SuitIsomorphism.flopBoard(index) != SuitIsomorphism.canonical(flop)[0]) mismatches++;
+				}
+			}
+		}
+		for (int i = 0; i < preflopCounts.length; i++) {
+			if (preflopCounts[i] != SuitIsomorphism.preflopWeight(i)) mismatches++;
+			int[] hand = SuitIsomorphism.preflopHand(i);
+			if (SuitIsomorphism.preflopIndex(hand[0], hand[1]) != i) mismatches++;
+		}
+		for (int i = 0; i < flopCounts.length; i++) {
+			if (flopCounts[i] != SuitIsomorphism.flopWeight(i)) mismatches++;
+		}
+		System.out.println("Preflop and flop indexes against every raw hand, mismatches: " + mismatches);
+		System.out.println(SuitIsomorphism.preflopName(SuitIsomorphism.preflopIndex(
+				new JSONArray(Arrays.asList(new String[]{"KS", "AS"})))) + " " + SuitIsomorphism.preflopName(
+				SuitIsomorphism.preflopIndex(new JSONArray(Arrays.asList(new String[]{"10H", "9C"})))));
+
+		// each class scored once and counted weight times
+		final long[] counts = new long[PokerHandEvaluator.Category.values().length];
+		long start = System.nanoTime();
+		SuitIsomorphism.forEachClass(new int[] {7}, new SuitIsomorphism.ClassVisitor() {
+			public void visit(long[] rounds, int weight) {
+				counts[BitboardEvaluator.score(rounds[0]) >>> 20] += weight;
+			}
+		});
+		long classTime = System.nanoTime() - start;
+		start = System.nanoTime();
+		boolean raw = Census.matches(7, Census.count(7, BitboardEvaluator.INSTANCE));
+		long rawTime = System.nanoTime() - start;
+		System.out.println("Seven card census by class: " + (Census.matches(7, counts) ? "counts match" : "COUNTS DO NOT MATCH")
+				+ " in " + classTime / 1000000 + " ms, by hand: " + (raw ? "counts match" : "COUNTS DO NOT MATCH")
+				+ " in " + rawTime / 1000000 + " ms");
+
+		System.out.println("------------------------------------------------------------");
+	}
+
+	// checks heads-up preflop equities against the general enumeration, runs the first
+	// matchups of the matrix twice to show it resuming, and if a matrix file is named by
+	// the poker.preflop property, prints a few lookups from it
+	public static void preflopEquityTest() {
+
+		System.out.println("\nPREFLOP EQUITY TEST\n");
+
+		Random random = new Random(22);
+		int mismatches = 0;
+		for (int m = 0; m < 5; m++) {
+			int[] cards = randomCards(random, 4);
+			double equity = PreflopEquity.headsUp(cards[0], cards[1], cards[2], cards[3]);
+			Equity exact = EquityCalculator.exact(new int[][] {{cards[0], cards[1]}, {cards[2], cards[3]}}, new int[0]);
+			if (Math.abs(100 * equity - exact.getEquity(0)) > 1e-9) mismatches++;
+			System.out.printf("%s %s vs %s %s: %.5f%n", Card.toString(cards[0]), Card.toString(cards[1]),
+					Card.toString(cards[2]), Card.toString(cards[3]), equity);
+		}
+		System.out.println("Mismatches against EquityCalculator.exact(): " + mismatches);
+
+		try {
+			File file = File.createTempFile("preflop", ".bin");
+			file.delete();
+			File checkpoint = new File(file.getPath() + ".partial");
+			checkpoint.deleteOnExit();
+			PreflopEquity.generate(file, ForkJoinPool.commonPool(), 16, System.out);
+			PreflopEquity.generate(file, ForkJoinPool.commonPool(), 16, System.out);
+			checkpoint.delete();
+		} catch (IOException e) {
+			System.out.println("Preflop equity test failed: " + e);
+		}
+
+		String path = System.getProperty("poker.preflop");
+		if (path != null) {
+			try {
+				long start = System.nanoTime();
+				PreflopEquity matrix = PreflopEquity.load(new File(path));
+				System.out.println("Loaded " + path + " in " + (System.nanoTime() - start) / 1000000 + " ms");
+				String[][] matchups = {{"AH", "AS", "KC", "KD"}, {"AH", "KH", "QS", "QC"}, {"7S", "2D", "10H", "9H"}};
+				for (String[] matchup : matchups) {
+					int[] hole = Card.parse(new JSONArray(Arrays.asList(matchup[0], matchup[1])));
+					int[] versus = Card.parse(new JSONArray(Arrays.asList(matchup[2], matchup[3])));
+					System.out.printf("%s %s vs %s %s: %.4f (class %s vs %s: %.4f)%n", matchup[0], matchup[1], matchup[2],
+							matchup[3], matrix.equity(hole, versus),
+							SuitIsomorphism.preflopName(SuitIsomorphism.preflopIndex(hole[0], hole[1])),
+							SuitIsomorphism.preflopName(SuitIsomorphism.preflopIndex(versus[0], versus[1])),
+							matrix.classEquity(SuitIsomorphism.preflopIndex(hole[0], hole[1]),
+									SuitIsomorphism.preflopIndex(versus[0], versus[1])));
+				}
+			} catch (IOException e) {
+				System.out.println("Cannot load " + path + ": " + e.getMessage());
+			}
+		}
+
+		System.out.println("------------------------------------------------------------");
+	}
+
+	// parses some ranges, checks card removal, and checks range against range equity
+	// against showdowns of every pair of combos on every run-out
+	public static void rangeTest() {
+
+		System.out.println("\nRANGE TEST\n");
+
+		String[] notations = {"AKs", "AK", "TT+", "A5s-A2s", "ATs+", "TT-77, AhKh", "QQ+, AKs:0.5", "any"};
+		for (String notation : notations) System.out.println(notation + ": " + Range.parse(notation));
+
+		Range queens = Range.parse("QQ+, AK");
+		long dead = Card.mask(Card.parse(new JSONArray(Arrays.asList(new String[]{"AS", "KD", "2C"}))));
+		System.out.println("QQ+, AK without AS KD 2C: " + queens.without(dead));
+
+		// load the classes involved before timing anything
+		Range.equity(queens, queens, Card.parse(new JSONArray(Arrays.asList(new String[]{"3H", "4H", "5H", "6H", "7H"}))));
+
+		Random random = new Random(23);
+		String[][] matchups = {{"QQ+, AKs", "22-88, AJo+"}, {"any", "any"}, {"TT+:0.5, AQs+", "KQs, QJs, JTs, T9s, 98s"}};
+		for (String[] matchup : matchups) {
+			Range hero = Range.parse(matchup[0]);
+			Range villain = Range.parse(matchup[1]);
+			int[] board = randomCards(random, 4);
+			long boardMask = Card.mask(board);
+
+			long start = System.nanoTime();
+			double equity = Range.equity(hero, villain, board);
+			long sweepTime = System.nanoTime() - start;
+
+			// every hero combo against every villain combo on every river
+			start = System.nanoTime();
+			int[] heroCombos = hero.combos();
+			int[] villainCombos = villain.combos();
+			long boardKey = 0L;
+			for (int card : board) boardKey += SevenCardLookup.cardKey(card);
+			double share = 0;
+			double total = 0;
+			for (int river = 0; river < Card.NUM_CARDS; river++) {
+				if ((boardMask & Card.bit(river)) != 0) continue;
+				long key = boardKey + SevenCardLookup.cardKey(river);
+				long mask = boardMask | Card.bit(river);
+				for (int h : heroCombos) {
+					int[] a = PreflopEquity.comboCards(h);
+					long aMask = Card.bit(a[0]) | Card.bit(a[1]);
+					if ((aMask & mask) != 0) continue;
+					int aScore = SevenCardLookup.score(key + SevenCardLookup.cardKey(a[0]) + SevenCardLookup.cardKey(a[1]), mask | aMask);
+					for (int v : villainCombos) {
+						int[] b = PreflopEquity.comboCards(v);
+						long bMask = Card.bit(b[0]) | Card.bit(b[1]);
+						if ((bMask & (mask | aMask)) != 0) continue;
+						int bScore = SevenCardLookup.score(key + SevenCardLookup.cardKey(b[0]) + SevenCardLookup.cardKey(b[1]), mask | bMask);
+						double w = hero.weight(h) * villain.weight(v);
+						share += w * (aScore > bScore ? 1 : aScore == bScore ? 0.5 : 0);
+						total += w;
+					}
+				}
+			}
+			long pairTime = System.nanoTime() - start;
+
+			StringBuilder turn = new StringBuilder();
+			for (int card : board) turn.append(Card.toString(card)).append(' ');
+			System.out.printf("%s vs %s on %s: %.6f, pairwise %.6f (%d ms vs %d ms)%n", matchup[0], matchup[1], turn.toString().trim(),
+					equity, share / total, sweepTime / 1000000, pairTime / 1000000);
+		}
+
+		System.out.println("------------------------------------------------------------");
+	}
+
+	// prints the strength of a few holdings on a flop, checks every combo's EHS against
+	// Range.comboEquities() on a flop, a turn and a river, and streams a few flops to a file
+	public static void handStrengthTest() {
+
+		System.out.println("\nHAND STRENGTH TEST\n");
+
+		int[] flop = parseCards("AS", "KD", "7H");
+		long start = System.nanoTime();
+		HandStrength strength = HandStrength.compute(Card.mask(flop), 10);
+		System.out.println("AS KD 7H, every combo in " + (System.nanoTime() - start) / 1000000 + " ms");
+		String[][] holdings = {{"7S", "7D"}, {"AH", "QC"}, {"9H", "8H"}, {"6C", "5C"}, {"2D", "3C"}};
+		for (String[] holding : holdings) {
+			int[] cards = parseCards(holding);
+			int combo = PreflopEquity.comboIndex(cards[0], cards[1]);
+			StringBuilder histogram = new StringBuilder();
+			for (float bin : strength.getHistogram(combo)) histogram.append(String.format(" %.2f", bin));
+			System.out.printf("%s %s: HS %.3f, EHS %.3f, EHS2 %.3f, histogram%s%n", holding[0], holding[1],
+					strength.getHS(combo), strength.getEHS(combo), strength.getEHS2(combo), histogram);
+		}
+
+		Random random = new Random(24);
+		Range any = Range.parse("any");
+		for (int size = 3; size <= 5; size++) {
+			int[] board = randomCards(random, size);
+			HandStrength s = HandStrength.compute(Card.mask(board), 10);
+			double[] equities = Range.comboEquities(any, any, board);
+			int mismatches = 0;
+			for (int combo = 0; combo < Range.COMBOS; combo++) {
+				if (Double.isNaN(equities[combo]) != Float.isNaN(s.getEHS(combo))) mismatches++;
+				else if (Math.abs(equities[combo] - s.getEHS(combo)) > 1e-6) mismatches++;
+			}
+			System.out.println(size + " card board, EHS against Range.comboEquities(), mismatches: " + mismatches);
+		}
+
+		try {
+			File file = File.createTempFile("flops", ".bin");
+			file.deleteOnExit();
+			start = System.nanoTime();
+			PrintStream quiet = new PrintStream(new ByteArrayOutputStream());
+			int boards = HandStrength.run(3, 10, file, ForkJoinPool.commonPool(), 16, quiet);
+			System.out.println("Wrote " + boards + " flops (" + file.length() + " bytes) in "
+					+ (System.nanoTime() - start) / 1000000 + " ms");
+			file.delete();
+		} catch (IOException e) {
+			System.out.println("Hand strength test failed: " + e);
+		}
+
+		System.out.println("------------------------------------------------------------");
+	}
+
+	// clusters the hands on a few flops, then checks that renaming suits never changes a bucket
+	// and that impossible hands are rejected
+	public static void handClustersTest() {
+
+		System.out.println("\nHAND CLUSTERS TEST\n");
+
+		System.out.println("EMD of all mass moved from the first to the last of three bins: "
+				+ HandClusters.emd(new float[] {1, 0, 0}, new float[] {0, 0, 1}));
+
+		try {
+			File strengths = File.createTempFile("flops", ".bin");
+			File buckets = File.createTempFile("flop-buckets", ".bin");
+			strengths.deleteOnExit();
+			buckets.deleteOnExit();
+			PrintStream quiet = new PrintStream(new ByteArrayOutputStream());
+			int numBoards = HandStrength.run(3, 10, strengths, ForkJoinPool.commonPool(), 16, quiet);
+
+			long start = System.nanoTime();
+			float[][] centroids = HandClusters.cluster(strengths, 8, 50, 25L, ForkJoinPool.commonPool(), buckets, quiet);
+			System.out.println("Clustered the hands on " + numBoards + " flops into " + centroids.length + " buckets in "
+					+ (System.nanoTime() - start) / 1000000 + " ms");
+			for (float[] centroid : centroids) {
+				StringBuilder histogram = new StringBuilder();
+				for (float bin : centroid) histogram.append(String.format(" %.2f", bin));
+				System.out.println("bucket histogram" + histogram);
+			}
+
+			// a hand and the same hand with its suits renamed must share a bucket
+			start = System.nanoTime();
+			HandClusters clusters = HandClusters.load(buckets);
+			System.out.println("Loaded " + buckets.length() + " bytes of buckets in "
+					+ (System.nanoTime() - start) / 1000 + " us");
+			long[] boards = HandStrength.canonicalBoards(3);
+			Random random = new Random(25);
+			int mismatches = 0;
+			int unbucketed = 0;
+			for (int i = 0; i < 10000; i++) {
+				int[] board = Card.fromMask(boards[random.nextInt(numBoards)]);
+				int[] hole = new int[2];
+				do {
+					hole[0] = random.nextInt(Card.NUM_CARDS);
+					hole[1] = random.nextInt(Card.NUM_CARDS);
+				} while (hole[0] == hole[1] || ((Card.mask(board) & Card.mask(hole)) != 0));
+
+				int[] suits = {0, 1, 2, 3};
+				for (int s = 3; s > 0; s--) {
+					int r = random.nextInt(s + 1);
+					int swap = suits[s];
+					suits[s] = suits[r];
+					suits[r] = swap;
+				}
+				int[] renamedBoard = new int[board.length];
+				int[] renamedHole = new int[hole.length];
+				for (int c = 0; c < board.length; c++) renamedBoard[c] = board[c] - board[c] % 4 + suits[board[c] % 4];
+				for (int c = 0; c < hole.length; c++) renamedHole[c] = hole[c] - hole[c] % 4 + suits[hole[c] % 4];
+
+				int bucket = clusters.bucket(board, hole);
+				if (bucket >= clusters.getNumBuckets()) unbucketed++;
+				if (bucket != clusters.bucket(renamedBoard, renamedHole)) mismatches++;
+			}
+			System.out.println("10000 random hands, unbucketed: " + unbucketed + ", bucket mismatches after renaming suits: "
+					+ mismatches);
+
+			int[] board = Card.fromMask(boards[0]);
+			int[][] impossible = {{board[0], (board[0] + 4) % Card.NUM_CARDS}, {(board[0] + 4) % Card.NUM_CARDS,
+					(board[0] + 4) % Card.NUM_CARDS}, {(board[0] + 4) % Card.NUM_CARDS}};
+			int rejected = 0;
+			for (int[] hole : impossible) {
+				try {
+					clusters.bucket(board, hole);
+				} catch (IllegalArgumentException e) {
+					rejected++;
+				}
+			}
+			System.out.println("Hands with a card dealt twice or the wrong number of hole cards rejected: " + rejected
+					+ " of " + impossible.length);
+			strengths.delete();
+			buckets.delete();
+		} catch (IOException e) {
+			System.out.println("Hand clusters test failed: " + e);
+		}
+
+		System.out.println("------------------------------------------------------------");
+	}
+
 }
@@ -0,0 +1,321 @@
+package poker;
+
+import org.json.JSONArray;
+
+/***
+ * evaluation of hands with wild cards: jokers and declared wild ranks
+ * (deuces wild and the like)
+ *
+ * a wild card stands for any card. instead of trying every substitution,
+ * the best completion is worked out from the rank and suit masks of the
+ * natural cards, category by category from the top: the highest rank that
+ * the wilds bring to five of a kind, the highest straight flush window that
+ * a suit is missing at most that many cards of, and so on down to a pair.
+ * a wild is never needed as a card already held, except for five of a kind.
+ * wilds rank like the cards they stand for (a wild royal flush equals a
+ * natural one), and five of a kind ranks above a royal flush (see Category).
+ *
+ * five card hands with one or two wilds, the video poker case, are looked
+ * up in tables keyed by the rank multiset of the natural cards and whether
+ * they share a suit, which are filled from the same logic at class load.
+ * substitutes() reports which cards the wilds were played as
+ */
+public final class WildCardEvaluator {
+
+	// wildRank for hands where only jokers are wild
+	public static final int NO_WILD_RANK = 0;
+
+	// score of five cards by multiset index of the natural ranks * 2 + 1 if they share a suit,
+	// with four naturals and one wild / three naturals and two wilds
+	private static final int[] ONE_WILD = new int[2 * 1820];
+	private static final int[] TWO_WILDS = new int[2 * 455];
+
+	// rank mask of the A-2-3-4-5 wheel
+	private static final int WHEEL = 0x100F;
+
+	static {
+		fillTable(ONE_WILD, new int[4], 0, 0);
+		fillTable(TWO_WILDS, new int[3], 0, 0);
+	}
+
+	private WildCardEvaluator() {
+	}
+
+	// true for the strings that stand for a joker: "JK" and "JOKER", in any case
+	public static boolean isJoker(String card) {
+		return card.equalsIgnoreCase("JK") || card.equalsIgnoreCase("JOKER");
+	}
+
+	// scores a JSON hand where jokers and cards of wildRank (2 to 14, or NO_WILD_RANK) are wild
+	public static int score(JSONArray hand, int wildRank) {
+		return score(naturals(hand, wildRank), wilds(hand, wildRank));
+	}
+
+	// the natural cards of a JSON hand as a mask
+	public static long naturals(JSONArray hand, int wildRank) {
+		long mask = 0L;
+		for (int i = 0; i < hand.length(); i++) {
+			if (isJoker(hand.getString(i))) continue;
+			int card = Card.parse(hand.getString(i));
+			if ((mask & Card.bit(card)) != 0)
+				throw new IllegalArgumentException("wild card hands are dealt from a single deck");
+			mask |= Card.bit(card);
+		}
+		return mask & ~wildMask(wildRank);
+	}
+
+	// the number of jokers and cards of wildRank in a JSON hand
+	public static int wilds(JSONArray hand, int wildRank) {
+		int wilds = 0;
+		for (int i = 0; i < hand.length(); i++) {
+			String card = hand.getString(i);
+			if (isJoker(card) || (wildRank != NO_WILD_RANK && Card.rank(Card.parse(card)) == wildRank)) wilds++;
+		}
+		return wilds;
+	}
+
+	// scores distinct cards plus a number of jokers, where cards of wildRank are wild too
+	public static int score(int[] cards, int jokers, int wildRank) {
+		long mask = Card.mask(cards);
+		if (Long.bitCount(mask) != cards.length)
+			throw new IllegalArgumentException("wild card hands are dealt from a single deck");
+
+		long wild = wildMask(wildRank);
+		return score(mask & ~wild, jokers + Long.bitCount(mask & wild));
+	}
+
+	// scores natural cards given as a mask (see Card) plus a number of wilds
+	public static int score(long naturals, int wilds) {
+		checkHand(naturals, wilds);
+		if (wilds == 0) return BitboardEvaluator.score(naturals);
+
+		int numNaturals = Long.bitCount(naturals);
+		if (numNaturals + wilds == 5 && wilds <= 2) {
+			int index = tableIndex(naturals, numNaturals);
+			return wilds == 1 ? ONE_WILD[index] : TWO_WILDS[index];
+		}
+		return resolve(naturals, wilds, null);
+	}
+
+	// the cards the wilds are played as for the best hand, of natural cards given as
+	// a mask plus a number of wilds; wilds that do not play are left out
+	public static int[] substitutes(long naturals, int wilds) {
+		checkHand(naturals, wilds);
+		int[] substitutes = new int[wilds + 1];
+		resolve(naturals, wilds, substitutes);
+		int[] played = new int[substitutes[wilds]];
+		System.arraycopy(substitutes, 0, played, 0, played.length);
+		return played;
+	}
+
+	// the wild cards of a hand as a mask: every card of wildRank
+	public static long wildMask(int wildRank) {
+		if (wildRank == NO_WILD_RANK) return 0L;
+		long mask = 0L;
+		for (int suit = 0; suit < 4; suit++) mask |= Card.bit(Card.of(wildRank, suit));
+		return mask;
+	}
+
+	private static void checkHand(long naturals, int wilds) {
+		if (wilds < 0) throw new IllegalArgumentException("a hand cannot hold " + wilds + " wilds");
+		if (naturals == 0L && wilds == 0) throw new IllegalArgumentException("a hand needs at least one card");
+	}
+
+	// best score of naturals plus wilds; if substitutes is given, the cards the wilds
+	// play as are written into it and their number into its last slot
+	private static int resolve(long naturals, int wilds, int[] substitutes) {
+		if (substitutes != null) substitutes[wilds] = 0;
+		if (wilds == 0) return BitboardEvaluator.score(naturals);
+
+		// with no natural cards the wilds play as aces: a lone wild is ace high,
+		// more are a pair of aces up to five of a kind
+		if (naturals == 0L) {
+			int aces = Math.min(wilds, 5);
+			substituteKind(0L, 12, aces, substitutes);
+			if (aces == 5) return MultiDeckEvaluator.FIVE_OF_A_KIND | (14 << 16);
+			long mask = 0L;
+			for (int suit = 0; suit < aces; suit++) mask |= Card.bit(Card.of(14, suit));
+			return BitboardEvaluator.score(mask);
+		}
+
+		int[] lanes = new int[4];
+		int[] counts = new int[13];
+		for (int suit = 0; suit < 4; suit++) {
+			lanes[suit] = Card.suitMask(naturals, suit);
+			for (int r = 0; r < 13; r++) counts[r] += (lanes[suit] >>> r) & 1;
+		}
+		int ones = lanes[0] | lanes[1] | lanes[2] | lanes[3];
+
+		int r = bestKind(counts, wilds, 5);
+		if (r >= 0) {
+			substituteKind(naturals, r, 5 - counts[r], substitutes);
+			return MultiDeckEvaluator.FIVE_OF_A_KIND | ((r + 2) << 16);
+		}
+
+		int bestHigh = 0;
+		int bestSuit = 0;
+		for (int suit = 0; suit < 4; suit++) {
+			int high = straightHigh(lanes[suit], wilds);
+			if (high > bestHigh) {
+				bestHigh = high;
+				bestSuit = suit;
+			}
+		}
+		if (bestHigh != 0) {
+			substituteRanks(window(bestHigh) & ~lanes[bestSuit], bestSuit, substitutes);
+			if (bestHigh == 14) return BitboardEvaluator.ROYAL_FLUSH | (14 << 16);
+			return BitboardEvaluator.STRAIGHT_FLUSH | (bestHigh << 16);
+		}
+
+		// with wilds to spare any of these would have been one of a kind more
+		r = bestKind(counts, wilds, 4);
+		if (r >= 0) {
+			substituteKind(naturals, r, 4 - counts[r], substitutes);
+			return BitboardEvaluator.FOUR_OF_A_KIND | ((r + 2) << 16)
+					| (BitboardEvaluator.topRanks(ones & ~(1 << r), 1) << 12);
+		}
+
+		for (int trips = 12; trips >= 0; trips--) {
+			int needed = Math.max(0, 3 - counts[trips]);
+			if (needed > wilds) continue;
+			for (int pair = 12; pair >= 0; pair--) {
+				if (pair == trips || needed + Math.max(0, 2 - counts[pair]) > wilds) continue;
+				substituteKind(naturals, trips, needed, substitutes);
+				substituteKind(naturals, pair, Math.max(0, 2 - counts[pair]), substitutes);
+				return BitboardEvaluator.FULL_HOUSE | ((trips + 2) << 16) | ((pair + 2) << 12);
+			}
+		}
+
+		// each wild plays as the highest rank the suit is missing
+		int bestFlush = 0;
+		int bestAdded = 0;
+		for (int suit = 0; suit < 4; suit++) {
+			if (Integer.bitCount(lanes[suit]) + wilds < 5) continue;
+			int added = 0;
+			for (int i = 0; i < wilds; i++) added |= Integer.highestOneBit(0x1FFF & ~(lanes[suit] | added));
+			int flush = BitboardEvaluator.FLUSH | BitboardEvaluator.topRanks(lanes[suit] | added, 5);
+			if (flush > bestFlush) {
+				bestFlush = flush;
+				bestSuit = suit;
+				bestAdded = added;
+			}
+		}
+		if (bestFlush != 0) {
+			substituteRanks(bestAdded, bestSuit, substitutes);
+			return bestFlush;
+		}
+
+		int high = straightHigh(ones, wilds);
+		if (high != 0) {
+			int missing = window(high) & ~ones;
+			substituteRanks(missing, Card.SPADES, substitutes);
+			return BitboardEvaluator.STRAIGHT | (high << 16);
+		}
+
+		r = bestKind(counts, wilds, 3);
+		if (r >= 0) {
+			substituteKind(naturals, r, 3 - counts[r], substitutes);
+			return BitboardEvaluator.THREE_OF_A_KIND | ((r + 2) << 16)
+					| (BitboardEvaluator.topRanks(ones & ~(1 << r), 2) << 8);
+		}
+
+		// a single wild pairs the highest card
+		r = bestKind(counts, wilds, 2);
+		substituteKind(naturals, r, 2 - counts[r], substitutes);
+		return BitboardEvaluator.ONE_PAIR | ((r + 2) << 16) | (BitboardEvaluator.topRanks(ones & ~(1 << r), 3) << 4);
+	}
+
+	// highest rank (0 = deuce) that wilds can bring to count cards, or -1
+	private static int bestKind(int[] counts, int wilds, int count) {
+		for (int r = 12; r >= 0; r--) {
+			if (counts[r] + wilds >= count) return r;
+		}
+		return -1;
+	}
+
+	// high card of the best straight a rank mask can make with wilds filling the gaps, or 0
+	private static int straightHigh(int ranks, int wilds) {
+		for (int high = 14; high >= 5; high--) {
+			if (Integer.bitCount(window(high) & ~ranks) <= wilds) return high;
+		}
+		return 0;
+	}
+
+	// rank mask of the straight with a high card
+	private static int window(int high) {
+		return high == 5 ? WHEEL : 0x1F << (high - 6);
+	}
+
+	// records needed wilds as cards of a rank, taking suits the hand does not hold first
+	private static void substituteKind(long naturals, int rank, int needed, int[] substitutes) {
+		if (substitutes == null) return;
+		for (int suit = Card.SPADES; suit >= 0 && needed > 0; suit--) {
+			int card = Card.of(rank + 2, suit);
+			if ((naturals & Card.bit(card)) != 0) continue;
+			substitutes[substitutes[substitutes.length - 1]++] = card;
+			naturals |= Card.bit(card);
+			needed--;
+		}
+		// five of a kind repeats a card
+		for (; needed > 0; needed--) substitutes[substitutes[substitutes.length - 1]++] = Card.of(rank + 2, Card.SPADES);
+	}
+
+	// records wilds as the cards of a suit in a rank mask, highest first
+	private static void substituteRanks(int ranks, int suit, int[] substitutes) {
+		if (substitutes == null) return;
+		for (int r = 12; r >= 0; r--) {
+			if ((ranks & (1 << r)) != 0) substitutes[substitutes[substitutes.length - 1]++] = Card.of(r + 2, suit);
+		}
+	}
+
+	// index into ONE_WILD or TWO_WILDS of four or three natural cards
+	private static int tableIndex(long naturals, int numNaturals) {
+		int[] ranks = new int[4];
+		int suits = 0;
+		int n = 0;
+		for (long m = naturals; m != 0; m &= m - 1) {
+			int bit = Long.numberOfTrailingZeros(m);
+			ranks[n++] = bit % 13;
+			suits |= 1 << (bit / 13);
+		}
+		return 2 * multisetIndex(ranks, numNaturals) + (Integer.bitCount(suits) == 1 ? 1 : 0);
+	}
+
+	// combinatorial index of a multiset of ranks (see FiveCardLookup.multisetIndex())
+	private static int multisetIndex(int[] ranks, int n) {
+		for (int i = 1; i < n; i++) {
+			int r = ranks[i];
+			int j = i - 1;
+			for (; j >= 0 && ranks[j] > r; j--) ranks[j + 1] = ranks[j];
+			ranks[j + 1] = r;
+		}
+		int index = 0;
+		for (int i = 0; i < n; i++) index += FiveCardLookup.BINOMIALS[ranks[i] + i][i + 1];
+		return index;
+	}
+
+	// every multiset of natural ranks, in mixed suits and, for distinct ranks, in one suit
+	private static void fillTable(int[] table, int[] ranks, int depth, int minRank) {
+		int n = ranks.length;
+		if (depth == n) {
+			int wilds = 5 - n;
+			long mixed = 0L;
+			long suited = 0L;
+			for (int i = 0; i < n; i++) {
+				// suits 0, 1, 2(, 3) never share a suit
+				mixed |= Card.bit(Card.of(ranks[i] + 2, i));
+				suited |= Card.bit(Card.of(ranks[i] + 2, Card.HEARTS));
+			}
+			int index = 2 * multisetIndex(ranks.clone(), n);
+			table[index] = resolve(mixed, wilds, null);
+			if (Long.bitCount(suited) == n) table[index + 1] = resolve(suited, wilds, null);
+			return;
+		}
+
+		for (int r = minRank; r < 13; r++) {
+			if (depth >= 4 && ranks[depth - 4] == r) continue;
+			ranks[depth] = r;
+			fillTable(table, ranks, depth + 1, r);
+		}
+	}
+}